@@ -0,0 +1,165 @@
+package me.hetian.flutter_qr_reader.reader;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Checks the reusable binarizers against ZXing's: on a stream of generated preview frames they
+ * must produce the same black matrices and rows, and once warmed up the live binarization path
+ * must stay within {@link #MAX_BYTES_PER_FRAME} of allocation per frame, counted by the JVM's
+ * per-thread allocation counter.
+ * <p>
+ * Run from {@code android/benchmark} with {@code gradle allocationCheck}, also part of
+ * {@code gradle check}. Exits with status 1 when a check fails.
+ */
+public final class BinarizerAllocationCheck {
+
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+    private static final int COMPARED_FRAMES = 30;
+    private static final int MEASURED_FRAMES = 200;
+    private static final int ROWS_PER_FRAME = 16;
+    // The source views, the binarizer and the BinaryBitmap of one frame
+    private static final long MAX_BYTES_PER_FRAME = 512;
+
+    private BinarizerAllocationCheck() {
+    }
+
+    public static void main(String[] args) throws NotFoundException {
+        FrameCorpus corpus = new FrameCorpus(WIDTH, HEIGHT, 1, 0.5f);
+        byte[][] frames = new byte[COMPARED_FRAMES][];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = corpus.frame(i).nv21;
+        }
+
+        int mismatches = compare(frames);
+        System.out.println(String.format(Locale.US, "%d frames compared with ZXing, %d mismatches",
+                frames.length, mismatches));
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        BinarizerWorkspace workspace = new BinarizerWorkspace();
+        byte[] matrixBuffer = new byte[WIDTH * HEIGHT];
+        BitArray row = new BitArray(HEIGHT);
+
+        // Warm up until the JIT has settled, then count
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            binarizeReusable(frames[i % frames.length], workspace, matrixBuffer, row);
+            binarizeZxing(frames[i % frames.length], matrixBuffer, row);
+        }
+        long start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            binarizeReusable(frames[i % frames.length], workspace, matrixBuffer, row);
+        }
+        long reusable = (threads.getThreadAllocatedBytes(threadId) - start) / MEASURED_FRAMES;
+        start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            binarizeZxing(frames[i % frames.length], matrixBuffer, row);
+        }
+        long zxing = (threads.getThreadAllocatedBytes(threadId) - start) / MEASURED_FRAMES;
+        System.out.println(String.format(Locale.US,
+                "bytes allocated per %dx%d frame: reusable %d (limit %d), ZXing %d",
+                WIDTH, HEIGHT, reusable, MAX_BYTES_PER_FRAME, zxing));
+
+        if (mismatches > 0 || reusable > MAX_BYTES_PER_FRAME) {
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return number of frames whose matrices or rows differ from ZXing's
+     */
+    private static int compare(byte[][] frames) {
+        BinarizerWorkspace workspace = new BinarizerWorkspace();
+        int mismatches = 0;
+        for (byte[] frame : frames) {
+            MyPlanarYUVLuminanceSource source =
+                    new MyPlanarYUVLuminanceSource(frame, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, false);
+            // The same workspace across frames, so stale state would show up as a mismatch
+            boolean same = sameOutput(new HybridBinarizer(source), new ReusableHybridBinarizer(source, workspace))
+                    && sameOutput(new GlobalHistogramBinarizer(source),
+                    new ReusableGlobalHistogramBinarizer(source, workspace));
+            if (!same) {
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    private static boolean sameOutput(Binarizer expected, Binarizer actual) {
+        BitMatrix expectedMatrix = blackMatrixOrNull(expected);
+        BitMatrix actualMatrix = blackMatrixOrNull(actual);
+        if (expectedMatrix == null ? actualMatrix != null : !expectedMatrix.equals(actualMatrix)) {
+            return false;
+        }
+        for (int y = 0; y < HEIGHT; y += HEIGHT / ROWS_PER_FRAME) {
+            BitArray expectedRow = blackRowOrNull(expected, y);
+            BitArray actualRow = blackRowOrNull(actual, y);
+            if (expectedRow == null ? actualRow != null : !expectedRow.equals(actualRow)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static BitMatrix blackMatrixOrNull(Binarizer binarizer) {
+        try {
+            return binarizer.getBlackMatrix();
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    private static BitArray blackRowOrNull(Binarizer binarizer, int y) {
+        try {
+            return binarizer.getBlackRow(y, null);
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * What {@link FrameDecoder} does per frame before the readers run: rotate the preview, check
+     * the lighting, build the black matrix, and the rows the 1D readers fetch.
+     */
+    private static void binarizeReusable(byte[] frame, BinarizerWorkspace workspace,
+                                         byte[] matrixBuffer, BitArray row) throws NotFoundException {
+        MyRotatedYUVLuminanceSource source =
+                new MyPlanarYUVLuminanceSource(frame, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, false)
+                        .rotateCounterClockwise(matrixBuffer);
+        BinarizerStrategy.isEvenlyLit(source, workspace);
+        BinaryBitmap bitmap = new BinaryBitmap(new ReusableHybridBinarizer(source, workspace));
+        bitmap.getBlackMatrix();
+        blackRows(bitmap, row);
+    }
+
+    private static void binarizeZxing(byte[] frame, byte[] matrixBuffer, BitArray row)
+            throws NotFoundException {
+        MyRotatedYUVLuminanceSource source =
+                new MyPlanarYUVLuminanceSource(frame, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, false)
+                        .rotateCounterClockwise(matrixBuffer);
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
+        bitmap.getBlackMatrix();
+        blackRows(bitmap, row);
+    }
+
+    private static void blackRows(BinaryBitmap bitmap, BitArray row) {
+        for (int y = 0; y < bitmap.getHeight(); y += bitmap.getHeight() / ROWS_PER_FRAME) {
+            try {
+                bitmap.getBlackRow(y, row);
+            } catch (NotFoundException e) {
+                // Row without enough contrast
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package me.hetian.flutter_qr_reader.reader;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of binarizing one rotated preview frame, which every 2D reader pays once per frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BinarizerBenchmark {
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String size;
+
+    private LuminanceSource source;
+    private final BinarizerWorkspace workspace = new BinarizerWorkspace();
+
+    @Setup
+    public void setUp() {
+        int[] dimensions = SyntheticFrames.parseSize(size);
+        int width = dimensions[0];
+        int height = dimensions[1];
+        byte[] nv21 = SyntheticFrames.nv21(width, height, BarcodeFormat.QR_CODE,
+                SyntheticFrames.contentsFor(BarcodeFormat.QR_CODE), Math.min(width, height) / 2);
+        source = new MyPlanarYUVLuminanceSource(nv21, width, height, 0, 0, width, height, false)
+                .rotateCounterClockwise(new byte[width * height]);
+    }
+
+    @Benchmark
+    public BitMatrix hybrid() throws NotFoundException {
+        return new HybridBinarizer(source).getBlackMatrix();
+    }
+
+    @Benchmark
+    public BitMatrix globalHistogram() throws NotFoundException {
+        return new GlobalHistogramBinarizer(source).getBlackMatrix();
+    }
+
+    /**
+     * Live path: the matrix and block arrays are reused between frames.
+     */
+    @Benchmark
+    public BitMatrix reusableHybrid() throws NotFoundException {
+        return new ReusableHybridBinarizer(source, workspace).getBlackMatrix();
+    }
+
+    @Benchmark
+    public BitMatrix reusableGlobalHistogram() throws NotFoundException {
+        return new ReusableGlobalHistogramBinarizer(source, workspace).getBlackMatrix();
+    }
+}
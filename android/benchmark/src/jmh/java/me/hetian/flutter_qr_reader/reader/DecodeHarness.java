@@ -0,0 +1,342 @@
+package me.hetian.flutter_qr_reader.reader;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.Result;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * End-to-end recall and latency of the live decode path over a generated {@link FrameCorpus}.
+ * <p>
+ * Every frame goes through {@link FrameDecoder} the way the decode thread of QRCodeReaderView
+ * runs it, once per decode configuration. A frame counts as recalled when the expected text is
+ * among the results. Latency covers building the preview source through decoding. Before
+ * measuring, clean frames of every format must decode, see {@link #checkCalibration}.
+ * <p>
+ * Run from {@code android/benchmark} with {@code gradle harness}, optionally with
+ * {@code -Pharness.frames=600 -Pharness.size=1280x720 -Pharness.seed=1 -Pharness.difficulty=1}.
+ */
+public final class DecodeHarness {
+
+    private static final int WARMUP_FRAMES = 60;
+    private static final int CALIBRATION_FRAMES = 120;
+    // Clean frames every format must decode before the harness numbers mean anything
+    private static final double CALIBRATION_RECALL = 95;
+
+    /**
+     * A way of decoding preview frames, with the numbers collected for it.
+     */
+    private abstract static class Configuration {
+
+        final String name;
+        final FrameDecoder decoder = new FrameDecoder();
+        // Sorted so that the buckets of one condition are listed together
+        final Map<String, int[]> recallByCondition = new TreeMap<>();
+        long[] latencies = new long[256];
+        int latencyCount;
+        int codeFrames;
+        int recalled;
+        int emptyFrames;
+        int falsePositives;
+
+        Configuration(String name, Map<DecodeHintType, ?> hints) {
+            this.name = name;
+            decoder.setHints(hints);
+        }
+
+        abstract Result[] decode(byte[] nv21, int width, int height);
+
+        void record(FrameCorpus.Frame frame, Result[] results, long nanos) {
+            if (latencyCount == latencies.length) {
+                latencies = Arrays.copyOf(latencies, latencyCount * 2);
+            }
+            latencies[latencyCount++] = nanos;
+
+            if (frame.format == null) {
+                emptyFrames++;
+                if (results != null && results.length > 0) {
+                    falsePositives++;
+                }
+                return;
+            }
+            String expected = FrameCorpus.expectedText(frame.format, frame.contents);
+            boolean hit = false;
+            if (results != null) {
+                for (Result result : results) {
+                    hit |= expected.equals(result.getText());
+                }
+            }
+            codeFrames++;
+            if (hit) {
+                recalled++;
+            }
+            for (String condition : conditionsOf(frame)) {
+                int[] counts = recallByCondition.get(condition);
+                if (counts == null) {
+                    counts = new int[2];
+                    recallByCondition.put(condition, counts);
+                }
+                counts[0] += hit ? 1 : 0;
+                counts[1]++;
+            }
+        }
+
+        double percentileMillis(double percentile) {
+            if (latencyCount == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile / 100 * latencyCount) - 1;
+            return sorted[Math.max(0, Math.min(latencyCount - 1, rank))] / 1e6;
+        }
+
+        void clear() {
+            recallByCondition.clear();
+            latencyCount = 0;
+            codeFrames = 0;
+            recalled = 0;
+            emptyFrames = 0;
+            falsePositives = 0;
+        }
+    }
+
+    private DecodeHarness() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static void main(String[] args) {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 600;
+        int[] size = SyntheticFrames.parseSize(args.length > 1 ? args[1] : "1280x720");
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        float difficulty = args.length > 3 ? Float.parseFloat(args[3]) : 1;
+        int width = size[0];
+        int height = size[1];
+
+        // ALL_MODE of the view leaves DataMatrix out, add it so the corpus measures its reader too
+        Map<DecodeHintType, Object> hints = ReaderChainBenchmark.allModeHints();
+        Collection<BarcodeFormat> formats = new ArrayList<>(
+                (Collection<BarcodeFormat>) hints.get(DecodeHintType.POSSIBLE_FORMATS));
+        formats.add(BarcodeFormat.DATA_MATRIX);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+        checkCalibration(width, height, seed, hints);
+        List<Configuration> configurations = configurations(hints);
+
+        // Warm the JIT up on frames that are not measured
+        run(new FrameCorpus(width, height, seed + 1, difficulty), WARMUP_FRAMES, width, height, configurations);
+        for (Configuration configuration : configurations) {
+            configuration.clear();
+        }
+        run(new FrameCorpus(width, height, seed, difficulty), frames, width, height, configurations);
+
+        System.out.println(String.format(Locale.US, "%d frames of %dx%d, seed %d, difficulty %s",
+                frames, width, height, seed, difficulty));
+        printSummary(configurations);
+        printRecallByCondition(configurations);
+    }
+
+    /**
+     * Decode clean frames of every format, so that a corpus drawing codes no reader could decode
+     * fails loudly instead of reporting the loss as recall.
+     *
+     * @throws IllegalStateException when a format is recalled on less than
+     *                               {@link #CALIBRATION_RECALL} percent of the clean frames
+     */
+    private static void checkCalibration(int width, int height, long seed, Map<DecodeHintType, ?> hints) {
+        FrameCorpus corpus = new FrameCorpus(width, height, seed + 2, 0);
+        FrameDecoder decoder = new FrameDecoder();
+        decoder.setHints(hints);
+        Map<BarcodeFormat, int[]> recallByFormat = new TreeMap<>();
+        for (int i = 0; i < CALIBRATION_FRAMES; i++) {
+            FrameCorpus.Frame frame = corpus.frame(i);
+            if (frame.format == null) {
+                continue;
+            }
+            Result result = decoder.decode(fullFrame(frame.nv21, width, height));
+            int[] counts = recallByFormat.get(frame.format);
+            if (counts == null) {
+                counts = new int[2];
+                recallByFormat.put(frame.format, counts);
+            }
+            if (result != null && FrameCorpus.expectedText(frame.format, frame.contents).equals(result.getText())) {
+                counts[0]++;
+            }
+            counts[1]++;
+        }
+        StringBuilder failed = new StringBuilder();
+        for (Map.Entry<BarcodeFormat, int[]> entry : recallByFormat.entrySet()) {
+            int[] counts = entry.getValue();
+            if (percent(counts[0], counts[1]) < CALIBRATION_RECALL) {
+                failed.append(String.format(Locale.US, " %s %d/%d", entry.getKey(), counts[0], counts[1]));
+            }
+        }
+        if (failed.length() > 0) {
+            throw new IllegalStateException("Corpus out of calibration, clean frames recalled:" + failed);
+        }
+    }
+
+    private static List<Configuration> configurations(Map<DecodeHintType, ?> hints) {
+        List<Configuration> configurations = new ArrayList<>();
+        configurations.add(new Configuration("full", hints) {
+            @Override
+            Result[] decode(byte[] nv21, int width, int height) {
+                return single(decoder.decode(fullFrame(nv21, width, height)));
+            }
+        });
+        configurations.add(new Configuration("hybridOnly", hints) {
+            {
+                decoder.getBinarizerStrategy().setGlobalFirst(false);
+            }
+
+            @Override
+            Result[] decode(byte[] nv21, int width, int height) {
+                return single(decoder.decode(fullFrame(nv21, width, height)));
+            }
+        });
+        configurations.add(new Configuration("adaptive", hints) {
+            {
+                decoder.setAdaptive(true);
+            }
+
+            @Override
+            Result[] decode(byte[] nv21, int width, int height) {
+                return single(decoder.decode(fullFrame(nv21, width, height)));
+            }
+        });
+        configurations.add(new Configuration("pyramid", hints) {
+            {
+                decoder.setPyramid(true);
+            }
+
+            @Override
+            Result[] decode(byte[] nv21, int width, int height) {
+                return single(decoder.decode(fullFrame(nv21, width, height)));
+            }
+        });
+        configurations.add(new Configuration("scanRect", hints) {
+            @Override
+            Result[] decode(byte[] nv21, int width, int height) {
+                // A centred viewfinder of 3/4 of the preview, as CameraManager would crop it
+                int cropWidth = width * 3 / 4;
+                int cropHeight = height * 3 / 4;
+                return single(decoder.decode(new MyPlanarYUVLuminanceSource(nv21, width, height,
+                        (width - cropWidth) / 2, (height - cropHeight) / 2,
+                        cropWidth, cropHeight, false)));
+            }
+        });
+        configurations.add(new Configuration("multiple", hints) {
+            @Override
+            Result[] decode(byte[] nv21, int width, int height) {
+                return decoder.decodeMultiple(fullFrame(nv21, width, height));
+            }
+        });
+        return configurations;
+    }
+
+    private static MyPlanarYUVLuminanceSource fullFrame(byte[] nv21, int width, int height) {
+        return new MyPlanarYUVLuminanceSource(nv21, width, height, 0, 0, width, height, false);
+    }
+
+    private static Result[] single(Result result) {
+        return result == null ? null : new Result[]{result};
+    }
+
+    private static void run(FrameCorpus corpus, int frames, int width, int height,
+                            List<Configuration> configurations) {
+        for (int i = 0; i < frames; i++) {
+            FrameCorpus.Frame frame = corpus.frame(i);
+            for (Configuration configuration : configurations) {
+                long start = System.nanoTime();
+                Result[] results = configuration.decode(frame.nv21, width, height);
+                configuration.record(frame, results, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * @return the condition buckets a frame is counted in
+     */
+    private static List<String> conditionsOf(FrameCorpus.Frame frame) {
+        List<String> conditions = new ArrayList<>();
+        conditions.add("format " + frame.format);
+        conditions.add("module px " + bucket(frame.modulePixels, 3, 4));
+        conditions.add("rotation " + bucket(Math.abs(frame.rotationDegrees), 10, 20) + " deg");
+        conditions.add("keystone " + bucket(frame.keystone, 0.1f, 0.2f));
+        conditions.add("blur radius " + frame.blurRadius);
+        conditions.add("noise sigma " + bucket(frame.noiseSigma, 5, 10));
+        conditions.add("contrast " + bucket(frame.contrast, 100, 150));
+        conditions.add("light gradient " + bucket(frame.gradient, 0.2f, 0.4f));
+        return conditions;
+    }
+
+    private static String bucket(float value, float low, float high) {
+        if (value < low) {
+            return "<" + trim(low);
+        }
+        return value < high ? trim(low) + "-" + trim(high) : ">=" + trim(high);
+    }
+
+    private static String trim(float value) {
+        return value == (int) value ? String.valueOf((int) value) : String.valueOf(value);
+    }
+
+    private static void printSummary(List<Configuration> configurations) {
+        System.out.println();
+        System.out.println(String.format(Locale.US, "%-12s %8s %8s %8s %8s %8s",
+                "config", "recall", "false+", "p50 ms", "p95 ms", "p99 ms"));
+        for (Configuration configuration : configurations) {
+            System.out.println(String.format(Locale.US, "%-12s %7.1f%% %4d/%-3d %8.2f %8.2f %8.2f",
+                    configuration.name,
+                    percent(configuration.recalled, configuration.codeFrames),
+                    configuration.falsePositives, configuration.emptyFrames,
+                    configuration.percentileMillis(50),
+                    configuration.percentileMillis(95),
+                    configuration.percentileMillis(99)));
+        }
+        for (Configuration configuration : configurations) {
+            Map<String, Long> binarizer = configuration.decoder.getBinarizerStrategy().getStatistics();
+            if (binarizer.get("globalAttempts") > 0) {
+                System.out.println(String.format(Locale.US, "%s: global binarizer %d of %d attempts, hybrid %d of %d",
+                        configuration.name, binarizer.get("globalHits"), binarizer.get("globalAttempts"),
+                        binarizer.get("hybridHits"), binarizer.get("hybridAttempts")));
+            }
+        }
+        for (Configuration configuration : configurations) {
+            long scaledHits = configuration.decoder.getScaledHits();
+            if (scaledHits > 0) {
+                System.out.println(String.format(Locale.US, "%s: %d of %d codes found at half resolution",
+                        configuration.name, scaledHits,
+                        scaledHits + configuration.decoder.getFullResolutionHits()));
+            }
+        }
+    }
+
+    private static void printRecallByCondition(List<Configuration> configurations) {
+        System.out.println();
+        StringBuilder header = new StringBuilder(String.format(Locale.US, "%-24s", "recall by"));
+        for (Configuration configuration : configurations) {
+            header.append(String.format(Locale.US, " %10s", configuration.name));
+        }
+        System.out.println(header);
+        for (String condition : configurations.get(0).recallByCondition.keySet()) {
+            StringBuilder line = new StringBuilder(String.format(Locale.US, "%-24s", condition));
+            for (Configuration configuration : configurations) {
+                int[] counts = configuration.recallByCondition.get(condition);
+                line.append(String.format(Locale.US, " %9.1f%%",
+                        counts == null ? 0 : percent(counts[0], counts[1])));
+            }
+            System.out.println(line);
+        }
+    }
+
+    private static double percent(int count, int total) {
+        return total == 0 ? 0 : 100.0 * count / total;
+    }
+}
@@ -0,0 +1,358 @@
+package me.hetian.flutter_qr_reader.reader;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.PerspectiveTransform;
+import com.google.zxing.datamatrix.encoder.SymbolShapeHint;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministic corpus of NV21 preview frames for {@link DecodeHarness}. Each frame shows one
+ * printed label, rotated, in perspective, blurred, noisy and unevenly lit by amounts drawn from a
+ * seeded random generator, so the same seed always yields the same frames.
+ * <p>
+ * Scenes are drawn the way the user sees them, then stored transposed into the preview buffer, so
+ * that the rotation of the live path turns them upright again.
+ */
+final class FrameCorpus {
+
+    /**
+     * Formats in the order frames cycle through them, null is a frame without a code.
+     */
+    static final BarcodeFormat[] FORMATS = {
+            BarcodeFormat.QR_CODE,
+            BarcodeFormat.DATA_MATRIX,
+            BarcodeFormat.PDF_417,
+            BarcodeFormat.CODE_128,
+            BarcodeFormat.EAN_13,
+            null,
+    };
+
+    private static final String ALPHANUMERIC = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    /**
+     * One generated frame and the conditions it was drawn with.
+     */
+    static final class Frame {
+        final byte[] nv21;
+        final BarcodeFormat format;
+        final String contents;
+        final float modulePixels;
+        final float rotationDegrees;
+        final float keystone;
+        final int blurRadius;
+        final float noiseSigma;
+        final int contrast;
+        final float gradient;
+
+        Frame(byte[] nv21, BarcodeFormat format, String contents, float modulePixels,
+              float rotationDegrees, float keystone, int blurRadius, float noiseSigma,
+              int contrast, float gradient) {
+            this.nv21 = nv21;
+            this.format = format;
+            this.contents = contents;
+            this.modulePixels = modulePixels;
+            this.rotationDegrees = rotationDegrees;
+            this.keystone = keystone;
+            this.blurRadius = blurRadius;
+            this.noiseSigma = noiseSigma;
+            this.contrast = contrast;
+            this.gradient = gradient;
+        }
+    }
+
+    private final int previewWidth;
+    private final int previewHeight;
+    private final long seed;
+    private final float difficulty;
+    // Scene buffers, reused between frames
+    private final float[] scene;
+    private final float[] blurScratch;
+
+    /**
+     * @param previewWidth  preview width, the long side of the sensor
+     * @param previewHeight preview height
+     * @param seed          seed of the corpus
+     * @param difficulty    scale of every distortion, 0 draws clean upright labels
+     */
+    FrameCorpus(int previewWidth, int previewHeight, long seed, float difficulty) {
+        this.previewWidth = previewWidth;
+        this.previewHeight = previewHeight;
+        this.seed = seed;
+        this.difficulty = difficulty;
+        this.scene = new float[previewWidth * previewHeight];
+        this.blurScratch = new float[previewWidth * previewHeight];
+    }
+
+    /**
+     * @return frame {@code index} of the corpus
+     */
+    Frame frame(int index) {
+        Random random = new Random(seed * 1000003L + index);
+        BarcodeFormat format = FORMATS[index % FORMATS.length];
+        String contents = format == null ? null : contentsFor(format, random);
+
+        // 2 to 6 pixels at difficulty 1, at least 3 pixels on clean frames
+        float modulePixels = Math.max(1, 3 - difficulty) + (3 + Math.min(2, difficulty)) * random.nextFloat();
+        float rotationDegrees = (random.nextFloat() * 2 - 1) * 20 * difficulty;
+        float keystone = 0.2f * random.nextFloat() * difficulty;
+        int blurRadius = Math.round(random.nextFloat() * 2 * difficulty);
+        float noiseSigma = 10 * random.nextFloat() * difficulty;
+        int contrast = 200 - Math.round(140 * random.nextFloat() * difficulty);
+        float gradient = 0.5f * random.nextFloat() * difficulty;
+        if (format == BarcodeFormat.PDF_417 || format == BarcodeFormat.DATA_MATRIX) {
+            // ZXing's PDF417 and DataMatrix detectors give up within a few degrees of tilt, users
+            // line these codes up with the viewfinder
+            rotationDegrees /= 4;
+        }
+        if (format == BarcodeFormat.PDF_417) {
+            // Its rows are only a few pixels high, noise that a QR code shrugs off breaks them
+            noiseSigma /= 2;
+        }
+
+        // Upright scene, width and height swapped relative to the preview
+        int width = previewHeight;
+        int height = previewWidth;
+        int paper = Math.min(255, 120 + contrast / 2 + random.nextInt(40));
+        int ink = Math.max(0, paper - contrast);
+        int backdrop = 60 + random.nextInt(120);
+        boolean vertical = random.nextBoolean();
+        drawBackdrop(width, height, backdrop, gradient, vertical);
+        if (format != null) {
+            float centerX = width * (0.5f + 0.15f * (random.nextFloat() * 2 - 1));
+            float centerY = height * (0.5f + 0.15f * (random.nextFloat() * 2 - 1));
+            modulePixels = drawLabel(width, height, encode(format, contents), modulePixels,
+                    rotationDegrees, keystone, centerX, centerY, paper, ink, gradient, vertical,
+                    format == BarcodeFormat.DATA_MATRIX);
+        }
+        if (blurRadius > 0) {
+            boxBlur(width, height, blurRadius);
+        }
+
+        byte[] nv21 = new byte[previewWidth * previewHeight * 3 / 2];
+        for (int row = 0; row < previewHeight; row++) {
+            for (int column = 0; column < previewWidth; column++) {
+                // Preview (column, row) shows scene (row, column)
+                float value = scene[column * width + row]
+                        + (float) random.nextGaussian() * noiseSigma;
+                nv21[row * previewWidth + column] =
+                        (byte) Math.max(0, Math.min(255, Math.round(value)));
+            }
+        }
+        for (int i = previewWidth * previewHeight; i < nv21.length; i++) {
+            nv21[i] = (byte) 128;
+        }
+        return new Frame(nv21, format, contents, modulePixels, rotationDegrees, keystone,
+                blurRadius, noiseSigma, contrast, gradient);
+    }
+
+    private void drawBackdrop(int width, int height, int level, float gradient, boolean vertical) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                scene[y * width + x] = level * light(x, y, width, height, gradient, vertical);
+            }
+        }
+    }
+
+    /**
+     * Light falloff across the scene, from 1 - gradient to 1 + gradient.
+     */
+    private static float light(int x, int y, int width, int height, float gradient,
+                               boolean vertical) {
+        float position = vertical ? (float) y / height : (float) x / width;
+        return 1 - gradient + 2 * gradient * position;
+    }
+
+    /**
+     * The label is moved as far as needed to lie wholly inside the scene. Without distortion its
+     * modules are whole pixels on the pixel grid, so that the clean frames decode reliably.
+     *
+     * @param centered keep the label over the centre of the scene. ZXing's DataMatrix detector
+     *                 searches outward from the image centre, as a user centres the code in the
+     *                 viewfinder, and does not find a code beside it
+     * @return the module size drawn, smaller than asked when the label would not fit
+     */
+    private float drawLabel(int width, int height, BitMatrix code, float modulePixels,
+                           float rotationDegrees, float keystone,
+                           float centerX, float centerY, int paper, int ink, float gradient,
+                           boolean vertical, boolean centered) {
+        boolean oneD = code.getHeight() == 1;
+        float codeWidth = code.getWidth();
+        float codeHeight = oneD ? code.getWidth() * 0.4f : code.getHeight();
+        // Quiet zone around the code, in whole modules
+        float margin = (float) Math.ceil(Math.max(oneD ? 10 : 2, Math.max(codeWidth, codeHeight) * 0.08f));
+
+        float maxLabelWidth = 0.95f * Math.min(width, height);
+        modulePixels = Math.min(modulePixels, maxLabelWidth / (codeWidth + 2 * margin));
+        boolean onGrid = difficulty == 0;
+        if (onGrid) {
+            modulePixels = Math.max(1, (float) Math.floor(modulePixels));
+        }
+        float labelWidth = (codeWidth + 2 * margin) * modulePixels;
+        float labelHeight = labelWidth * (codeHeight + 2 * margin) / (codeWidth + 2 * margin);
+        double angle = Math.toRadians(rotationDegrees);
+        float cos = (float) Math.cos(angle);
+        float sin = (float) Math.sin(angle);
+        // Half extents of the rotated label, the keystone only shortens it
+        float halfX = (Math.abs(labelWidth * cos) + Math.abs(labelHeight * sin)) / 2 + 1;
+        float halfY = (Math.abs(labelWidth * sin) + Math.abs(labelHeight * cos)) / 2 + 1;
+        if (centered) {
+            float reach = 0.25f * Math.min(labelWidth, labelHeight);
+            centerX = Math.max(width / 2f - reach, Math.min(width / 2f + reach, centerX));
+            centerY = Math.max(height / 2f - reach, Math.min(height / 2f + reach, centerY));
+        }
+        centerX = Math.max(halfX, Math.min(width - halfX, centerX));
+        centerY = Math.max(halfY, Math.min(height - halfY, centerY));
+        if (onGrid) {
+            centerX = Math.round(centerX - labelWidth / 2) + labelWidth / 2;
+            centerY = Math.round(centerY - labelHeight / 2) + labelHeight / 2;
+        }
+        // Label corners before rotation, the top edge shortened for the keystone
+        float[] corners = {
+                -labelWidth / 2 * (1 - keystone), -labelHeight / 2,
+                labelWidth / 2 * (1 - keystone), -labelHeight / 2,
+                labelWidth / 2, labelHeight / 2,
+                -labelWidth / 2, labelHeight / 2,
+        };
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < corners.length; i += 2) {
+            float x = corners[i] * cos - corners[i + 1] * sin + centerX;
+            float y = corners[i] * sin + corners[i + 1] * cos + centerY;
+            corners[i] = x;
+            corners[i + 1] = y;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+        // Scene pixels to label coordinates, where the code spans [margin, margin + size)
+        PerspectiveTransform toLabel = PerspectiveTransform.quadrilateralToQuadrilateral(
+                corners[0], corners[1], corners[2], corners[3],
+                corners[4], corners[5], corners[6], corners[7],
+                0, 0, codeWidth + 2 * margin, 0,
+                codeWidth + 2 * margin, codeHeight + 2 * margin, 0, codeHeight + 2 * margin);
+
+        int x0 = Math.max(0, (int) minX);
+        int x1 = Math.min(width - 1, (int) Math.ceil(maxX));
+        int y0 = Math.max(0, (int) minY);
+        int y1 = Math.min(height - 1, (int) Math.ceil(maxY));
+        float[] points = new float[8];
+        for (int y = y0; y <= y1; y++) {
+            for (int x = x0; x <= x1; x++) {
+                // 2x2 supersampling for anti-aliased edges
+                points[0] = x + 0.25f;
+                points[1] = y + 0.25f;
+                points[2] = x + 0.75f;
+                points[3] = y + 0.25f;
+                points[4] = x + 0.25f;
+                points[5] = y + 0.75f;
+                points[6] = x + 0.75f;
+                points[7] = y + 0.75f;
+                toLabel.transformPoints(points);
+                int offset = y * width + x;
+                float light = light(x, y, width, height, gradient, vertical);
+                float sum = 0;
+                for (int i = 0; i < points.length; i += 2) {
+                    float u = points[i];
+                    float v = points[i + 1];
+                    if (u < 0 || v < 0 || u >= codeWidth + 2 * margin
+                            || v >= codeHeight + 2 * margin) {
+                        sum += scene[offset];
+                        continue;
+                    }
+                    int codeX = (int) (u - margin);
+                    int codeY = oneD ? 0 : (int) (v - margin);
+                    boolean dark = u >= margin && v >= margin
+                            && codeX < code.getWidth() && (v - margin) < codeHeight
+                            && code.get(codeX, codeY);
+                    sum += (dark ? ink : paper) * light;
+                }
+                scene[offset] = sum / 4;
+            }
+        }
+        return modulePixels;
+    }
+
+    private void boxBlur(int width, int height, int radius) {
+        float scale = 1f / (2 * radius + 1);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float sum = 0;
+                for (int k = -radius; k <= radius; k++) {
+                    sum += scene[y * width + Math.max(0, Math.min(width - 1, x + k))];
+                }
+                blurScratch[y * width + x] = sum * scale;
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float sum = 0;
+                for (int k = -radius; k <= radius; k++) {
+                    sum += blurScratch[Math.max(0, Math.min(height - 1, y + k)) * width + x];
+                }
+                scene[y * width + x] = sum * scale;
+            }
+        }
+    }
+
+    private static String contentsFor(BarcodeFormat format, Random random) {
+        switch (format) {
+            case EAN_13: {
+                StringBuilder digits = new StringBuilder("69");
+                while (digits.length() < 12) {
+                    digits.append(random.nextInt(10));
+                }
+                // The writer appends the check digit
+                return digits.toString();
+            }
+            case CODE_128:
+                return "PLT-" + randomString(random, 6 + random.nextInt(6));
+            default:
+                return "https://example.com/" + randomString(random, 8 + random.nextInt(40));
+        }
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(ALPHANUMERIC.charAt(random.nextInt(ALPHANUMERIC.length())));
+        }
+        return builder.toString();
+    }
+
+    private static BitMatrix encode(BarcodeFormat format, String contents) {
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.MARGIN, 0);
+        hints.put(EncodeHintType.DATA_MATRIX_SHAPE, SymbolShapeHint.FORCE_SQUARE);
+        try {
+            // At their minimal size one module is one pixel wide
+            return new MultiFormatWriter().encode(contents, format, 0, 0, hints);
+        } catch (WriterException e) {
+            throw new IllegalArgumentException("Can not encode " + format, e);
+        }
+    }
+
+    /**
+     * @return the text a reader returns for the encoded contents
+     */
+    static String expectedText(BarcodeFormat format, String contents) {
+        if (format == BarcodeFormat.EAN_13 && contents.length() == 12) {
+            int sum = 0;
+            for (int i = 0; i < 12; i++) {
+                int digit = contents.charAt(i) - '0';
+                sum += i % 2 == 0 ? digit : 3 * digit;
+            }
+            return contents + (10 - sum % 10) % 10;
+        }
+        return contents;
+    }
+}
@@ -0,0 +1,94 @@
+package me.hetian.flutter_qr_reader.reader;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.LuminanceSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a frame into luminance for the readers: the rotated preview view used on the
+ * live path, the full copy it replaced, and {@link MyRGBLuminanceSource} construction used for
+ * still images.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LuminanceSourceBenchmark {
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String size;
+
+    private int width;
+    private int height;
+    private byte[] nv21;
+    private int[] argb;
+    private byte[] matrixBuffer;
+    private byte[] row;
+
+    @Setup
+    public void setUp() {
+        int[] dimensions = SyntheticFrames.parseSize(size);
+        width = dimensions[0];
+        height = dimensions[1];
+        int codeSize = Math.min(width, height) / 2;
+        nv21 = SyntheticFrames.nv21(width, height, BarcodeFormat.QR_CODE,
+                SyntheticFrames.contentsFor(BarcodeFormat.QR_CODE), codeSize);
+        argb = SyntheticFrames.argb(width, height, BarcodeFormat.QR_CODE,
+                SyntheticFrames.contentsFor(BarcodeFormat.QR_CODE), codeSize);
+        matrixBuffer = new byte[width * height];
+        row = new byte[Math.max(width, height)];
+    }
+
+    private MyPlanarYUVLuminanceSource previewSource() {
+        return new MyPlanarYUVLuminanceSource(nv21, width, height, 0, 0, width, height, false);
+    }
+
+    /**
+     * Live path: rotated view, matrix transposed into the decode thread's reused buffer.
+     */
+    @Benchmark
+    public byte[] rotateMatrix() {
+        return previewSource().rotateCounterClockwise(matrixBuffer).getMatrix();
+    }
+
+    /**
+     * Rotated view read row by row, as the 1D readers do.
+     */
+    @Benchmark
+    public void rotateRows(Blackhole blackhole) {
+        LuminanceSource source = previewSource().rotateCounterClockwise(matrixBuffer);
+        for (int y = 0; y < source.getHeight(); y++) {
+            blackhole.consume(source.getRow(y, row));
+        }
+    }
+
+    /**
+     * Baseline: the full-buffer rotation plus horizontal flip used before the rotated view.
+     */
+    @Benchmark
+    public byte[] legacyRotateCopy() {
+        byte[] rotatedData = new byte[nv21.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                rotatedData[x * height + height - y - 1] = nv21[x + y * width];
+            }
+        }
+        return new MyPlanarYUVLuminanceSource(rotatedData, height, width, 0, 0, height, width, true)
+                .getMatrix();
+    }
+
+    @Benchmark
+    public MyRGBLuminanceSource rgbSource() {
+        return new MyRGBLuminanceSource(width, height, argb);
+    }
+}
@@ -0,0 +1,91 @@
+package me.hetian.flutter_qr_reader.reader;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.HybridBinarizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reader cost alone, per barcode format, on a 1280x720 preview frame whose binarization is done
+ * up front. NONE is a frame without a code, the worst case where every reader gives up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReaderBenchmark {
+
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+
+    @Param({"QR_CODE", "DATA_MATRIX", "PDF_417", "CODE_128", "EAN_13", "NONE"})
+    public String frame;
+
+    private BinaryBitmap rotatedBitmap;
+    private BitArray middleRow;
+    private MyMultiFormatReader reader;
+    private MyMultiFormatOneDReader oneDReader;
+    private Map<DecodeHintType, Object> hints;
+
+    @Setup
+    public void setUp() throws NotFoundException {
+        BarcodeFormat format = "NONE".equals(frame) ? null : BarcodeFormat.valueOf(frame);
+        byte[] data = SyntheticFrames.nv21(WIDTH, HEIGHT, format,
+                format == null ? null : SyntheticFrames.contentsFor(format), 400);
+        MyPlanarYUVLuminanceSource source =
+                new MyPlanarYUVLuminanceSource(data, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, false);
+
+        // The black matrix is cached by the bitmap, so 2D readers only pay for detection
+        rotatedBitmap = new BinaryBitmap(new HybridBinarizer(source.rotateCounterClockwise()));
+        rotatedBitmap.getBlackMatrix();
+        // 1D codes are drawn along preview rows, the middle row crosses every bar
+        middleRow = new BinaryBitmap(new HybridBinarizer(source)).getBlackRow(HEIGHT / 2, null);
+
+        hints = ReaderChainBenchmark.allModeHints();
+        reader = new MyMultiFormatReader();
+        reader.setHints(hints);
+        oneDReader = new MyMultiFormatOneDReader(hints);
+    }
+
+    /**
+     * The whole reader chain as the decode thread runs it.
+     */
+    @Benchmark
+    public Result multiFormatReader() {
+        try {
+            return reader.decodeWithState(rotatedBitmap);
+        } catch (NotFoundException e) {
+            return null;
+        } finally {
+            reader.reset();
+        }
+    }
+
+    /**
+     * One row through the 1D sub-readers.
+     */
+    @Benchmark
+    public Result oneDReaderRow() {
+        try {
+            return oneDReader.decodeRow(HEIGHT / 2, middleRow, hints);
+        } catch (NotFoundException e) {
+            return null;
+        } finally {
+            oneDReader.reset();
+        }
+    }
+}
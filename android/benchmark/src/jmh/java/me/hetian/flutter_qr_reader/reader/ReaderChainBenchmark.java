@@ -0,0 +1,114 @@
+package me.hetian.flutter_qr_reader.reader;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.common.HybridBinarizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame cost of rebuilding the {@link MyMultiFormatReader} chain through
+ * {@code decode(image, hints)} compared with configuring it once and calling
+ * {@code decodeWithState(image)}, on the live preview path.
+ * <p>
+ * Run with {@code gradle jmh -Pjmh.includes=ReaderChainBenchmark -Pjmh.profilers=gc} to see the
+ * allocation difference as well.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReaderChainBenchmark {
+
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+
+    @Param({"QR_CODE", "NONE"})
+    public String frame;
+
+    private byte[] data;
+    private Map<DecodeHintType, Object> hints;
+    private MyMultiFormatReader cachedReader;
+    private MyMultiFormatReader rebuiltReader;
+
+    @Setup
+    public void setUp() {
+        BarcodeFormat format = "NONE".equals(frame) ? null : BarcodeFormat.valueOf(frame);
+        data = SyntheticFrames.nv21(WIDTH, HEIGHT, format, "https://github.com/hetian9288", 300);
+
+        hints = allModeHints();
+
+        cachedReader = new MyMultiFormatReader();
+        cachedReader.setHints(hints);
+        rebuiltReader = new MyMultiFormatReader();
+    }
+
+    /**
+     * @return the hints QRCodeReaderView uses in ALL_MODE
+     */
+    static Map<DecodeHintType, Object> allModeHints() {
+        Collection<BarcodeFormat> formats = new ArrayList<>();
+        formats.add(BarcodeFormat.AZTEC);
+        formats.add(BarcodeFormat.PDF_417);
+        formats.addAll(DecodeFormatManager.getBarCodeFormats());
+        formats.addAll(DecodeFormatManager.getQrCodeFormats());
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.TRY_HARDER, BarcodeFormat.QR_CODE);
+        hints.put(DecodeHintType.CHARACTER_SET, "utf-8");
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+        return hints;
+    }
+
+    private BinaryBitmap previewBitmap() {
+        LuminanceSource source =
+                new MyPlanarYUVLuminanceSource(data, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, false);
+        return new BinaryBitmap(new HybridBinarizer(source.rotateCounterClockwise()));
+    }
+
+    @Benchmark
+    public Result rebuildPerFrame() {
+        try {
+            return rebuiltReader.decode(previewBitmap(), hints);
+        } catch (NotFoundException e) {
+            return null;
+        } finally {
+            rebuiltReader.reset();
+        }
+    }
+
+    @Benchmark
+    public Result decodeWithState() {
+        try {
+            return cachedReader.decodeWithState(previewBitmap());
+        } catch (NotFoundException e) {
+            return null;
+        } finally {
+            cachedReader.reset();
+        }
+    }
+
+    /**
+     * Reader construction alone, without any image work.
+     */
+    @Benchmark
+    public MyMultiFormatReader setHintsOnly() {
+        rebuiltReader.setHints(hints);
+        return rebuiltReader;
+    }
+}
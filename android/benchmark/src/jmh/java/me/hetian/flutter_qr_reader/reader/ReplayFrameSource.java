@@ -0,0 +1,277 @@
+package me.hetian.flutter_qr_reader.reader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link FrameSource} that replays recorded frames from raw files, one frame per file, in the
+ * order given. A file holds at least the Y plane of a frame, so raw NV21 preview buffers can be
+ * replayed as they were dumped.
+ * <p>
+ * Frames are delivered on a replay thread at a fixed frame rate, into a small pool of buffers like
+ * the camera's: when every buffer is still held by the consumer at the time a frame is due, the
+ * frame is skipped, as a camera without a queued buffer would drop it. With a frame rate of 0
+ * frames are delivered as fast as buffers come back and none are skipped.
+ */
+public final class ReplayFrameSource implements FrameSource {
+
+    private static final int BUFFER_COUNT = 3;
+
+    private final List<File> files;
+    private final int width;
+    private final int height;
+    private final int rotation;
+    private final byte[][] buffers = new byte[BUFFER_COUNT][];
+    private final boolean[] checkedOut = new boolean[BUFFER_COUNT];
+    private volatile FrameCallback callback;
+    private volatile float frameRate = 30;
+    private volatile boolean loop;
+    private volatile Thread thread;
+    private long delivered;
+    private long skipped;
+    private boolean finished;
+    private IOException error;
+
+    /**
+     * @param files    frames in replay order, each at least {@code width * height} bytes
+     * @param width    width of the Y plane
+     * @param height   height of the Y plane
+     * @param rotation clockwise rotation reported with every frame
+     */
+    public ReplayFrameSource(List<File> files, int width, int height, int rotation) {
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No frames to replay");
+        }
+        for (File file : files) {
+            if (file.length() < (long) width * height) {
+                throw new IllegalArgumentException("Frame smaller than " + width + "x" + height + ": " + file);
+            }
+        }
+        this.files = new ArrayList<>(files);
+        this.width = width;
+        this.height = height;
+        this.rotation = rotation;
+    }
+
+    /**
+     * @return the regular files of a directory, sorted by name
+     */
+    public static List<File> listFrames(File directory) {
+        File[] children = directory.listFiles();
+        List<File> frames = new ArrayList<>();
+        if (children != null) {
+            Arrays.sort(children);
+            for (File child : children) {
+                if (child.isFile()) {
+                    frames.add(child);
+                }
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * @param frameRate frames per second, or 0 to deliver whenever a buffer is free
+     */
+    public void setFrameRate(float frameRate) {
+        this.frameRate = Math.max(0, frameRate);
+    }
+
+    /**
+     * @param loop start over from the first frame after the last one, until stopped
+     */
+    public void setLoop(boolean loop) {
+        this.loop = loop;
+    }
+
+    @Override
+    public void setFrameCallback(FrameCallback callback) {
+        this.callback = callback;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        delivered = 0;
+        skipped = 0;
+        finished = false;
+        error = null;
+        thread = new Thread("FrameReplayThread") {
+            @Override
+            public void run() {
+                replay(this);
+            }
+        };
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        Thread replayThread;
+        synchronized (this) {
+            replayThread = thread;
+            thread = null;
+            notifyAll();
+        }
+        if (replayThread != null) {
+            replayThread.interrupt();
+            try {
+                replayThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void releaseFrame(byte[] data) {
+        int index = indexOf(data);
+        if (index >= 0 && checkedOut[index]) {
+            checkedOut[index] = false;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Wait for the last frame to be delivered, never returns early when looping.
+     *
+     * @return false if the timeout passed first
+     * @throws IOException if a frame could not be read, which ends the replay
+     */
+    public synchronized boolean awaitFinished(long timeoutMs) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!finished) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        if (error != null) {
+            throw error;
+        }
+        return true;
+    }
+
+    /**
+     * @return frames handed to the callback since {@link #start()}
+     */
+    public synchronized long getDeliveredCount() {
+        return delivered;
+    }
+
+    /**
+     * @return frames dropped since {@link #start()} because every buffer was held
+     */
+    public synchronized long getSkippedCount() {
+        return skipped;
+    }
+
+    private void replay(Thread replayThread) {
+        long startNanos = System.nanoTime();
+        try {
+            for (long i = 0; loop || i < files.size(); i++) {
+                float rate = frameRate;
+                byte[] buffer;
+                if (rate > 0) {
+                    long dueNanos = startNanos + (long) (i * 1e9 / rate);
+                    long sleepNanos = dueNanos - System.nanoTime();
+                    if (sleepNanos > 0) {
+                        Thread.sleep(sleepNanos / 1000000, (int) (sleepNanos % 1000000));
+                    }
+                    buffer = checkOutFree(replayThread, false);
+                } else {
+                    buffer = checkOutFree(replayThread, true);
+                }
+                if (buffer == null) {
+                    if (thread != replayThread) {
+                        return;
+                    }
+                    synchronized (this) {
+                        skipped++;
+                    }
+                    continue;
+                }
+                read(files.get((int) (i % files.size())), buffer);
+                synchronized (this) {
+                    delivered++;
+                }
+                FrameCallback frameCallback = callback;
+                if (frameCallback != null) {
+                    frameCallback.onFrame(buffer, width, height, rotation, System.nanoTime() / 1000000);
+                } else {
+                    releaseFrame(buffer);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        } catch (IOException e) {
+            synchronized (this) {
+                error = e;
+            }
+        } finally {
+            synchronized (this) {
+                finished = true;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @param block wait until a buffer is released instead of giving up
+     * @return a free buffer marked as checked out, or null
+     */
+    private synchronized byte[] checkOutFree(Thread replayThread, boolean block)
+            throws InterruptedException {
+        while (thread == replayThread) {
+            for (int i = 0; i < buffers.length; i++) {
+                if (!checkedOut[i]) {
+                    if (buffers[i] == null) {
+                        buffers[i] = new byte[width * height];
+                    }
+                    checkedOut[i] = true;
+                    return buffers[i];
+                }
+            }
+            if (!block) {
+                return null;
+            }
+            wait();
+        }
+        return null;
+    }
+
+    private void read(File file, byte[] buffer) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < buffer.length) {
+                int count = in.read(buffer, offset, buffer.length - offset);
+                if (count < 0) {
+                    throw new IOException("Frame smaller than " + width + "x" + height + ": " + file);
+                }
+                offset += count;
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private int indexOf(byte[] buffer) {
+        if (buffer != null) {
+            for (int i = 0; i < buffers.length; i++) {
+                if (buffers[i] == buffer) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+}
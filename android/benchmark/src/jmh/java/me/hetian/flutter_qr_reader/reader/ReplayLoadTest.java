@@ -0,0 +1,229 @@
+package me.hetian.flutter_qr_reader.reader;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.Result;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Drives the live {@link ScanPipeline} from a {@link ReplayFrameSource} in real time, the way
+ * QRCodeReaderView drives it from the camera: frames go through a single slot to one decode
+ * thread, a frame arriving while the thread is busy replaces the waiting one, and buffers go back
+ * to the source once decoded or dropped. Reports how many frames the source had to skip, how many
+ * were dropped or decoded, decode latency and the codes found.
+ * <p>
+ * Frames are replayed from a directory of raw frames (Y plane or NV21, one file per frame, sorted
+ * by name), or from a generated {@link FrameCorpus} written to a temporary directory first, in
+ * which case the codes found are also checked against the corpus.
+ * <p>
+ * Run from {@code android/benchmark} with {@code gradle replay}, optionally with
+ * {@code -Preplay.frames=300 -Preplay.size=1280x720 -Preplay.fps=30 -Preplay.dir=frames}.
+ */
+public final class ReplayLoadTest {
+
+    private static final float CORPUS_DIFFICULTY = 0.5f;
+    private static final long CORPUS_SEED = 1;
+
+    /**
+     * Collects what the pipeline reports. Results arrive on the decode thread, drops on the replay
+     * thread.
+     */
+    private static final class Statistics implements ScanPipeline.Listener {
+
+        private final Set<String> texts = new HashSet<>();
+        private long[] latencies = new long[256];
+        private int decoded;
+        private int withResult;
+        private long dropped;
+
+        @Override
+        public synchronized void onFrameDecoded(Result[] results, long decodeTimeNanos) {
+            if (decoded == latencies.length) {
+                latencies = Arrays.copyOf(latencies, decoded * 2);
+            }
+            latencies[decoded++] = decodeTimeNanos;
+            if (results != null && results.length > 0) {
+                withResult++;
+                for (Result result : results) {
+                    texts.add(result.getText());
+                }
+            }
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void onFrameDropped() {
+            dropped++;
+            notifyAll();
+        }
+
+        /**
+         * Wait for every delivered frame to be decoded or dropped, so the last frame of the replay
+         * is decoded before the pipeline quits.
+         */
+        synchronized void awaitHandled(long delivered, long timeoutMs) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            while (decoded + dropped < delivered) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return;
+                }
+                wait(remaining);
+            }
+        }
+
+        synchronized double percentileMillis(double percentile) {
+            if (decoded == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(latencies, decoded);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile / 100 * decoded) - 1;
+            return sorted[Math.max(0, Math.min(decoded - 1, rank))] / 1e6;
+        }
+    }
+
+    private ReplayLoadTest() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int[] size = SyntheticFrames.parseSize(args.length > 1 ? args[1] : "1280x720");
+        float fps = args.length > 2 ? Float.parseFloat(args[2]) : 30;
+        String directory = args.length > 3 ? args[3] : "";
+        int width = size[0];
+        int height = size[1];
+
+        Set<String> expected = null;
+        File frameDirectory;
+        if (directory.isEmpty()) {
+            frameDirectory = createTempDirectory();
+            expected = writeCorpus(frameDirectory, frames, width, height);
+        } else {
+            frameDirectory = new File(directory);
+        }
+        List<File> files = ReplayFrameSource.listFrames(frameDirectory);
+        if (files.size() > frames) {
+            files = files.subList(0, frames);
+        }
+
+        ReplayFrameSource source = new ReplayFrameSource(files, width, height, 90);
+        source.setFrameRate(fps);
+        Statistics statistics = new Statistics();
+        // Results are handled on the decode thread, there is no main thread to post them to
+        ScanPipeline pipeline = new ScanPipeline(source, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        }, statistics);
+        pipeline.setHints(hints());
+        source.setFrameCallback(pipeline);
+        Thread decodeThread = new Thread(pipeline, "ReplayDecodeThread");
+        decodeThread.start();
+        long start = System.nanoTime();
+        source.start();
+        // Twice the replay time, for a pipeline that falls far behind
+        long timeoutMs = fps > 0 ? (long) (2000 * files.size() / fps) + 10000 : Long.MAX_VALUE;
+        boolean finished = source.awaitFinished(timeoutMs);
+        source.stop();
+        statistics.awaitHandled(source.getDeliveredCount(), 10000);
+        pipeline.quit();
+        decodeThread.join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (expected != null) {
+            deleteDirectory(frameDirectory);
+        }
+
+        System.out.println(String.format(Locale.US, "%d frames of %dx%d at %s fps from %s%s",
+                files.size(), width, height, fps > 0 ? String.valueOf(fps) : "unlimited",
+                expected != null ? "a generated corpus" : frameDirectory.getPath(),
+                finished ? "" : ", timed out"));
+        System.out.println(String.format(Locale.US,
+                "delivered %d, skipped by source %d, dropped %d, decoded %d (%.1f per s), %d with a result",
+                source.getDeliveredCount(), source.getSkippedCount(), statistics.dropped, statistics.decoded,
+                statistics.decoded / seconds, statistics.withResult));
+        System.out.println(String.format(Locale.US, "decode p50 %.2f ms, p95 %.2f ms, p99 %.2f ms",
+                statistics.percentileMillis(50), statistics.percentileMillis(95), statistics.percentileMillis(99)));
+        if (expected != null) {
+            Set<String> found = new HashSet<>(statistics.texts);
+            int falsePositives = 0;
+            for (String text : statistics.texts) {
+                if (!expected.contains(text)) {
+                    falsePositives++;
+                }
+            }
+            found.retainAll(expected);
+            System.out.println(String.format(Locale.US, "codes found %d of %d, %d unexpected",
+                    found.size(), expected.size(), falsePositives));
+        }
+    }
+
+    /**
+     * @return texts of the codes in the written frames
+     */
+    private static Set<String> writeCorpus(File directory, int frames, int width, int height)
+            throws IOException {
+        FrameCorpus corpus = new FrameCorpus(width, height, CORPUS_SEED, CORPUS_DIFFICULTY);
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < frames; i++) {
+            FrameCorpus.Frame frame = corpus.frame(i);
+            if (frame.format != null) {
+                expected.add(FrameCorpus.expectedText(frame.format, frame.contents));
+            }
+            OutputStream out = new FileOutputStream(
+                    new File(directory, String.format(Locale.US, "frame%05d.y", i)));
+            try {
+                // The Y plane is all the pipeline reads
+                out.write(frame.nv21, 0, width * height);
+            } finally {
+                out.close();
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * ALL_MODE of the view with DataMatrix added, as {@link DecodeHarness} decodes the corpus
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<DecodeHintType, Object> hints() {
+        Map<DecodeHintType, Object> hints = ReaderChainBenchmark.allModeHints();
+        Collection<BarcodeFormat> formats = new ArrayList<>(
+                (Collection<BarcodeFormat>) hints.get(DecodeHintType.POSSIBLE_FORMATS));
+        formats.add(BarcodeFormat.DATA_MATRIX);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+        return hints;
+    }
+
+    private static File createTempDirectory() throws IOException {
+        File directory = File.createTempFile("replay", "");
+        if (!directory.delete() || !directory.mkdir()) {
+            throw new IOException("Can not create " + directory);
+        }
+        return directory;
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] children = directory.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                child.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,108 @@
+package me.hetian.flutter_qr_reader.reader;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Builds deterministic NV21 preview frames and ARGB images with a barcode drawn into them, the
+ * fixed corpus every benchmark runs on.
+ */
+final class SyntheticFrames {
+
+    private static final int BACKGROUND = 200;
+    private static final int FOREGROUND = 30;
+
+    private SyntheticFrames() {
+    }
+
+    /**
+     * @return sample contents that are valid for the format
+     */
+    static String contentsFor(BarcodeFormat format) {
+        switch (format) {
+            case EAN_13:
+                return "6901234567892";
+            case EAN_8:
+                return "96385074";
+            case UPC_A:
+                return "036000291452";
+            case ITF:
+                return "00012345678905";
+            case CODE_39:
+            case CODE_93:
+                return "PALLET-0042";
+            default:
+                return "https://github.com/hetian9288";
+        }
+    }
+
+    /**
+     * @param size frame size as "widthxheight"
+     * @return {width, height}
+     */
+    static int[] parseSize(String size) {
+        int separator = size.indexOf('x');
+        return new int[]{Integer.parseInt(size.substring(0, separator)),
+                Integer.parseInt(size.substring(separator + 1))};
+    }
+
+    /**
+     * @return opaque ARGB pixels of the given size laid out like {@code Bitmap.getPixels}, with a
+     * code centred in them, or an empty image when {@code format} is null
+     */
+    static int[] argb(int width, int height, BarcodeFormat format, String contents, int codeSize) {
+        byte[] frame = nv21(width, height, format, contents, codeSize);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            int gray = frame[i] & 0xff;
+            pixels[i] = 0xff000000 | (gray << 16) | (gray << 8) | gray;
+        }
+        return pixels;
+    }
+
+    /**
+     * @return an NV21 frame of the given size, with a code of roughly {@code codeSize} pixels
+     * centred in it, or an empty frame when {@code format} is null
+     */
+    static byte[] nv21(int width, int height, BarcodeFormat format, String contents, int codeSize) {
+        byte[] frame = new byte[width * height * 3 / 2];
+        for (int i = 0; i < width * height; i++) {
+            frame[i] = (byte) BACKGROUND;
+        }
+        // Neutral chroma
+        for (int i = width * height; i < frame.length; i++) {
+            frame[i] = (byte) 128;
+        }
+        if (format != null) {
+            BitMatrix code = encode(format, contents, codeSize);
+            int left = (width - code.getWidth()) / 2;
+            int top = (height - code.getHeight()) / 2;
+            for (int y = 0; y < code.getHeight(); y++) {
+                for (int x = 0; x < code.getWidth(); x++) {
+                    if (code.get(x, y)) {
+                        frame[(top + y) * width + left + x] = (byte) FOREGROUND;
+                    }
+                }
+            }
+        }
+        return frame;
+    }
+
+    static BitMatrix encode(BarcodeFormat format, String contents, int codeSize) {
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.MARGIN, 4);
+        boolean oneD = DecodeFormatManager.ONE_D_FORMATS.contains(format);
+        try {
+            return new MultiFormatWriter().encode(contents, format, codeSize,
+                    oneD ? codeSize / 3 : codeSize, hints);
+        } catch (WriterException e) {
+            throw new IllegalArgumentException("Can not encode " + format, e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package me.hetian.flutter_qr_reader;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Still image decoding keeps the last bitmap of a thread and decodes the next image into it, so
+ * images of different sizes have to decode in any order on the same thread.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QRCodeDecoderTest {
+
+    private final List<File> files = new ArrayList<>();
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void decodesLargerImageAfterSmallerOneOnSameThread() throws Exception {
+        // Not sampled, 300x300
+        String small = writeCode("small", 300);
+        // Sampled by 4 to 400x400, more than the bitmap left by the small image holds
+        String large = writeCode("large", 1600);
+
+        assertEquals("small", QRCodeDecoder.syncDecodeQRCodeWithThreadReader(small));
+        assertEquals("large", QRCodeDecoder.syncDecodeQRCodeWithThreadReader(large));
+        assertEquals("small", QRCodeDecoder.syncDecodeQRCodeWithThreadReader(small));
+    }
+
+    @Test
+    public void decodesBytesOfDifferentSizesOnSameThread() throws Exception {
+        assertEquals("small", QRCodeDecoder.syncDecodeQRCode(context, readAll(writeCode("small", 300)), 0));
+        assertEquals("large", QRCodeDecoder.syncDecodeQRCode(context, readAll(writeCode("large", 1600)), 0));
+    }
+
+    private String writeCode(String text, int size) throws WriterException, IOException {
+        BitMatrix matrix = new QRCodeWriter().encode(text, BarcodeFormat.QR_CODE, size, size);
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                bitmap.setPixel(x, y, matrix.get(x, y) ? Color.BLACK : Color.WHITE);
+            }
+        }
+        File file = File.createTempFile(text, ".png", context.getCacheDir());
+        files.add(file);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } finally {
+            out.close();
+            bitmap.recycle();
+        }
+        return file.getPath();
+    }
+
+    private static byte[] readAll(String path) throws IOException {
+        File file = new File(path);
+        byte[] data = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(data);
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+}
@@ -18,6 +18,7 @@ package com.google.zxing.client.android.camera;
 
 import android.content.Context;
 import android.graphics.Point;
+import android.graphics.Rect;
 import android.hardware.Camera;
 import android.util.Log;
 import android.view.Display;
@@ -59,11 +60,20 @@ final class CameraConfigurationManager {
   private Point previewSizeOnScreen;
   private int cwRotationFromDisplayToCamera;
   private int cwNeededRotation;
+  private boolean frontFacing;
+  private PreviewSizePolicy previewSizePolicy;
 
   CameraConfigurationManager(Context context) {
     this.context = context;
   }
 
+  /**
+   * @param previewSizePolicy chooses the preview size for decoding, or null to match the screen
+   */
+  void setPreviewSizePolicy(PreviewSizePolicy previewSizePolicy) {
+    this.previewSizePolicy = previewSizePolicy;
+  }
+
   void initFromCameraParameters(OpenCamera camera, int width, int height) {
     Camera.Parameters parameters = camera.getCamera().getParameters();
     WindowManager manager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
@@ -97,6 +107,8 @@ final class CameraConfigurationManager {
     int cwRotationFromNaturalToCamera = camera.getOrientation();
     SimpleLog.i(TAG, "Camera at: " + cwRotationFromNaturalToCamera);
 
+    frontFacing = camera.getFacing() == CameraFacing.FRONT;
+
     // Still not 100% sure about this. But acts like we need to flip this:
     if (camera.getFacing() == CameraFacing.FRONT) {
       cwRotationFromNaturalToCamera = (360 - cwRotationFromNaturalToCamera) % 360;
@@ -116,10 +128,11 @@ final class CameraConfigurationManager {
 
     resolution = new Point(width, height);
     SimpleLog.i(TAG, "Screen resolution in current orientation: " + resolution);
-    cameraResolution = findBestPreviewSizeValue(parameters, resolution);
-    SimpleLog.i(TAG, "Camera resolution: " + cameraResolution);
     bestPreviewSize = findBestPreviewSizeValue(parameters, resolution);
     SimpleLog.i(TAG, "Best available preview size: " + bestPreviewSize);
+    // The same point, so the size the camera actually applies is what frames are decoded with
+    cameraResolution = bestPreviewSize;
+    SimpleLog.i(TAG, "Camera resolution: " + cameraResolution);
 
     boolean isScreenPortrait = resolution.x < resolution.y;
     boolean isPreviewSizePortrait = bestPreviewSize.x < bestPreviewSize.y;
@@ -194,6 +207,76 @@ final class CameraConfigurationManager {
     return resolution;
   }
 
+  /**
+   * Maps a rectangle given in view coordinates into preview frame coordinates, undoing the
+   * rotation (and front camera mirroring) applied to the preview when it is displayed.
+   *
+   * @param viewRect rectangle within the view passed to {@link #initFromCameraParameters}
+   * @return the rectangle in preview coordinates, clamped to the frame, or null if empty
+   */
+  Rect getRectInPreview(Rect viewRect) {
+    if (resolution == null || cameraResolution == null) {
+      return null;
+    }
+    float viewWidth = resolution.x;
+    float viewHeight = resolution.y;
+    // Normalized corners in the displayed image
+    float left = viewRect.left / viewWidth;
+    float right = viewRect.right / viewWidth;
+    float top = viewRect.top / viewHeight;
+    float bottom = viewRect.bottom / viewHeight;
+    if (frontFacing) {
+      float mirroredLeft = 1f - right;
+      right = 1f - left;
+      left = mirroredLeft;
+    }
+
+    // Rotate counter clockwise by the angle the preview is rotated clockwise for display
+    float previewLeft;
+    float previewTop;
+    float previewRight;
+    float previewBottom;
+    switch (cwRotationFromDisplayToCamera) {
+      case 90:
+        previewLeft = top;
+        previewRight = bottom;
+        previewTop = 1f - right;
+        previewBottom = 1f - left;
+        break;
+      case 180:
+        previewLeft = 1f - right;
+        previewRight = 1f - left;
+        previewTop = 1f - bottom;
+        previewBottom = 1f - top;
+        break;
+      case 270:
+        previewLeft = 1f - bottom;
+        previewRight = 1f - top;
+        previewTop = left;
+        previewBottom = right;
+        break;
+      default:
+        previewLeft = left;
+        previewRight = right;
+        previewTop = top;
+        previewBottom = bottom;
+        break;
+    }
+
+    int previewWidth = cameraResolution.x;
+    int previewHeight = cameraResolution.y;
+    Rect rect = new Rect(
+        Math.max(0, Math.round(previewLeft * previewWidth)),
+        Math.max(0, Math.round(previewTop * previewHeight)),
+        Math.min(previewWidth, Math.round(previewRight * previewWidth)),
+        Math.min(previewHeight, Math.round(previewBottom * previewHeight)));
+    if (rect.width() <= 0 || rect.height() <= 0) {
+      return null;
+    }
+    SimpleLog.i(TAG, "Scan rect " + viewRect + " in preview: " + rect);
+    return rect;
+  }
+
   // All references to Torch are removed from here, methods, variables...
 
   public Point findBestPreviewSizeValue(Camera.Parameters parameters, Point screenResolution) {
@@ -232,6 +315,20 @@ final class CameraConfigurationManager {
       SimpleLog.i(TAG, "Supported preview sizes: " + previewSizesString);
     }
 
+    if (previewSizePolicy != null) {
+      List<Point> sizes = new ArrayList<Point>(supportedPreviewSizes.size());
+      for (Camera.Size supportedPreviewSize : supportedPreviewSizes) {
+        sizes.add(new Point(supportedPreviewSize.width, supportedPreviewSize.height));
+      }
+      Point decodeSize = previewSizePolicy.choose(sizes, screenResolution, MIN_PREVIEW_PIXELS);
+      if (decodeSize != null) {
+        SimpleLog.i(TAG, "Preview size for a code short side of "
+            + previewSizePolicy.getRequiredShortSide() + ": " + decodeSize);
+        return decodeSize;
+      }
+      SimpleLog.i(TAG, "No preview size within the decode budget, matching the screen");
+    }
+
     Point bestSize = null;
     float screenAspectRatio = (float) screenResolution.x / (float) screenResolution.y;
 
@@ -301,6 +398,59 @@ final class CameraConfigurationManager {
     return false;
   }
 
+  /**
+   * Selects the supported preview fps range with the lowest maximum that still reaches
+   * {@code maxFps}, preferring the widest of those so auto exposure can still slow down in low
+   * light. Without such a range, or with {@code maxFps} 0, the fastest range is selected.
+   *
+   * @return the range to select, or null if the camera lists no ranges
+   */
+  int[] findPreviewFpsRange(Camera.Parameters parameters, int maxFps) {
+    List<int[]> supportedRanges = parameters.getSupportedPreviewFpsRange();
+    if (supportedRanges == null || supportedRanges.isEmpty()) {
+      return null;
+    }
+    int target = maxFps * 1000;
+    int[] best = null;
+    int[] fastest = null;
+    for (int[] range : supportedRanges) {
+      int min = range[Camera.Parameters.PREVIEW_FPS_MIN_INDEX];
+      int max = range[Camera.Parameters.PREVIEW_FPS_MAX_INDEX];
+      if (fastest == null || max > fastest[Camera.Parameters.PREVIEW_FPS_MAX_INDEX]
+          || max == fastest[Camera.Parameters.PREVIEW_FPS_MAX_INDEX]
+          && min < fastest[Camera.Parameters.PREVIEW_FPS_MIN_INDEX]) {
+        fastest = range;
+      }
+      if (max >= target && (best == null || max < best[Camera.Parameters.PREVIEW_FPS_MAX_INDEX]
+          || max == best[Camera.Parameters.PREVIEW_FPS_MAX_INDEX]
+          && min < best[Camera.Parameters.PREVIEW_FPS_MIN_INDEX])) {
+        best = range;
+      }
+    }
+    if (maxFps <= 0 || best == null) {
+      best = fastest;
+    }
+    return best;
+  }
+
+  /**
+   * @param range one of the supported preview fps ranges
+   * @return whether the camera accepted the range
+   */
+  boolean setPreviewFpsRange(Camera camera, int[] range) {
+    Camera.Parameters parameters = camera.getParameters();
+    SimpleLog.i(TAG, "Setting preview fps range to " + Arrays.toString(range));
+    parameters.setPreviewFpsRange(range[Camera.Parameters.PREVIEW_FPS_MIN_INDEX],
+        range[Camera.Parameters.PREVIEW_FPS_MAX_INDEX]);
+    try {
+      camera.setParameters(parameters);
+      return true;
+    } catch (RuntimeException re) {
+      SimpleLog.w(TAG, "Camera rejected preview fps range " + Arrays.toString(range));
+      return false;
+    }
+  }
+
   void setTorchEnabled(Camera camera, boolean enabled) {
     Camera.Parameters parameters = camera.getParameters();
     setTorchEnabled(parameters, enabled, false);
@@ -18,15 +18,20 @@ package com.google.zxing.client.android.camera;
 
 import android.content.Context;
 import android.graphics.Point;
+import android.graphics.Rect;
 import android.hardware.Camera;
+import android.os.SystemClock;
 import android.view.SurfaceHolder;
 
 import com.google.zxing.PlanarYUVLuminanceSource;
 
 import java.io.IOException;
+import java.util.Arrays;
 
+import me.hetian.flutter_qr_reader.reader.FrameSource;
 import me.hetian.flutter_qr_reader.reader.MyPlanarYUVLuminanceSource;
 import me.hetian.flutter_qr_reader.readerView.SimpleLog;
+import com.google.zxing.client.android.camera.open.CameraFacing;
 import com.google.zxing.client.android.camera.open.OpenCamera;
 import com.google.zxing.client.android.camera.open.OpenCameraInterface;
 
@@ -34,26 +39,54 @@ import com.google.zxing.client.android.camera.open.OpenCameraInterface;
  * This object wraps the Camera service object and expects to be the only one talking to it. The
  * implementation encapsulates the steps needed to take preview-sized images, which are used for
  * both preview and decoding.
+ * <p>
+ * As a {@link FrameSource} it delivers pooled preview frames on the thread that opened the camera.
  *
  * @author dswitkin@google.com (Daniel Switkin)
  */
-public final class CameraManager {
+public final class CameraManager implements FrameSource {
 
   private static final String TAG = CameraManager.class.getSimpleName();
 
+  private static final int PREVIEW_BUFFER_COUNT = 3;
+
   private final Context context;
   private final CameraConfigurationManager configManager;
   private OpenCamera openCamera;
   private AutoFocusManager autoFocusManager;
   private boolean initialized;
+  private boolean previewSizePolicyChanged;
   private boolean previewing;
   private Camera.PreviewCallback previewCallback;
+  private FrameCallback frameCallback;
+  private boolean previewCallbackWithBuffer;
+  private final PreviewBufferPool previewBufferPool = new PreviewBufferPool(PREVIEW_BUFFER_COUNT);
+  private final Camera.PreviewCallback pooledPreviewCallback = new Camera.PreviewCallback() {
+    @Override
+    public void onPreviewFrame(byte[] data, Camera camera) {
+      previewBufferPool.checkOut(data);
+      Camera.PreviewCallback callback = previewCallback;
+      FrameCallback theFrameCallback = frameCallback;
+      Point previewSize = configManager.getCameraResolution();
+      if (callback != null) {
+        callback.onPreviewFrame(data, camera);
+      } else if (theFrameCallback != null && previewSize != null) {
+        theFrameCallback.onFrame(data, previewSize.x, previewSize.y, frameRotation,
+            SystemClock.elapsedRealtime());
+      } else {
+        previewBufferPool.release(data);
+      }
+    }
+  };
   private int displayOrientation = 0;
+  // Clockwise rotation that turns frames of the open camera upright on the display
+  private volatile int frameRotation;
 
   // PreviewCallback references are also removed from original ZXING authors work,
   // since we're using our own interface.
-  // FramingRects references are also removed from original ZXING authors work,
-  // since We're using all view size while detecting QR-Codes.
+  // The framing rect is optional here: without one the whole preview frame is decoded.
+  private Rect framingRect;
+  private Rect framingRectInPreview;
   private int requestedCameraId = OpenCameraInterface.NO_REQUESTED_CAMERA;
   private long autofocusIntervalInMs = AutoFocusManager.DEFAULT_AUTO_FOCUS_INTERVAL_MS;
 
@@ -62,11 +95,99 @@ public final class CameraManager {
     this.configManager = new CameraConfigurationManager(context);
   }
 
-  public void setPreviewCallback(Camera.PreviewCallback previewCallback) {
+  public synchronized void setPreviewCallback(Camera.PreviewCallback previewCallback) {
+    this.previewCallback = previewCallback;
+    this.frameCallback = null;
+    this.previewCallbackWithBuffer = false;
+
+    if (isOpen()) {
+      installPreviewCallback(openCamera.getCamera());
+    }
+  }
+
+  /**
+   * Like {@link #setPreviewCallback(Camera.PreviewCallback)}, but frames are delivered into a
+   * small pool of preallocated buffers. Every frame handed to the callback must be given back
+   * through {@link #releasePreviewBuffer(byte[])} once it is no longer used.
+   *
+   * @param previewCallback the callback receiving pooled preview frames
+   */
+  public synchronized void setPreviewCallbackWithBuffer(Camera.PreviewCallback previewCallback) {
     this.previewCallback = previewCallback;
+    this.frameCallback = null;
+    this.previewCallbackWithBuffer = previewCallback != null;
+
+    if (isOpen()) {
+      installPreviewCallback(openCamera.getCamera());
+    }
+  }
+
+  /**
+   * Delivers pooled preview frames like {@link #setPreviewCallbackWithBuffer(Camera.PreviewCallback)},
+   * with the preview size, the sensor orientation and the time of arrival. Frames are given back
+   * through {@link #releaseFrame(byte[])}.
+   *
+   * @param callback the callback receiving preview frames, or null to stop delivering them
+   */
+  @Override
+  public synchronized void setFrameCallback(FrameCallback callback) {
+    this.previewCallback = null;
+    this.frameCallback = callback;
+    this.previewCallbackWithBuffer = callback != null;
 
     if (isOpen()) {
-      openCamera.getCamera().setPreviewCallback(previewCallback);
+      installPreviewCallback(openCamera.getCamera());
+    }
+  }
+
+  @Override
+  public void start() {
+    startPreview();
+  }
+
+  @Override
+  public void stop() {
+    stopPreview();
+  }
+
+  @Override
+  public void releaseFrame(byte[] data) {
+    previewBufferPool.release(data);
+  }
+
+  /**
+   * Returns a frame received through {@link #setPreviewCallbackWithBuffer(Camera.PreviewCallback)}
+   * to the camera so it can be filled again.
+   *
+   * @param data the preview frame
+   */
+  public void releasePreviewBuffer(byte[] data) {
+    previewBufferPool.release(data);
+  }
+
+  /**
+   * @return number of preview frames recycled into the camera since creation
+   */
+  public long getPreviewBufferHits() {
+    return previewBufferPool.getHits();
+  }
+
+  /**
+   * @return number of preview buffers that had to be allocated since creation
+   */
+  public long getPreviewBufferMisses() {
+    return previewBufferPool.getMisses();
+  }
+
+  private void installPreviewCallback(Camera camera) {
+    previewBufferPool.detach();
+    if (previewCallbackWithBuffer) {
+      // A null callback clears the buffers already queued in the camera.
+      camera.setPreviewCallbackWithBuffer(null);
+      camera.setPreviewCallbackWithBuffer(pooledPreviewCallback);
+      previewBufferPool.attach(camera);
+    } else {
+      camera.setPreviewCallback(previewCallback);
     }
   }
 
@@ -75,9 +196,17 @@ public final class CameraManager {
 
     if (isOpen()) {
       openCamera.getCamera().setDisplayOrientation(degrees);
+      updateFrameRotation();
     }
   }
 
+  private void updateFrameRotation() {
+    // The display orientation of a front camera also compensates the mirrored preview, frames
+    // are not mirrored
+    frameRotation = openCamera.getFacing() == CameraFacing.FRONT
+        ? (360 - displayOrientation) % 360 : displayOrientation;
+  }
+
   public void setAutofocusInterval(long autofocusIntervalInMs) {
     this.autofocusIntervalInMs = autofocusIntervalInMs;
     if (autoFocusManager != null) {
@@ -91,10 +220,41 @@ public final class CameraManager {
     }
   }
 
+  /**
+   * Chooses the preview size for decoding instead of matching the screen. Takes effect the next
+   * time the camera is opened.
+   *
+   * @param policy the policy, or null to match the screen
+   */
+  public synchronized void setPreviewSizePolicy(PreviewSizePolicy policy) {
+    configManager.setPreviewSizePolicy(policy);
+    previewSizePolicyChanged = true;
+  }
+
   public Point getPreviewSize() {
     return configManager.getCameraResolution();
   }
 
+  /**
+   * Restricts decoding to part of the view.
+   *
+   * @param rect the scan area in view coordinates, or null to decode the whole frame
+   */
+  public synchronized void setFramingRect(Rect rect) {
+    framingRect = rect == null ? null : new Rect(rect);
+    framingRectInPreview = null;
+  }
+
+  /**
+   * @return the framing rect in preview frame coordinates, or null to decode the whole frame
+   */
+  public synchronized Rect getFramingRectInPreview() {
+    if (framingRectInPreview == null && framingRect != null && initialized) {
+      framingRectInPreview = configManager.getRectInPreview(framingRect);
+    }
+    return framingRectInPreview;
+  }
+
   /**
    * Opens the google.zxing.client.android.android.com.google.zxing.client.android.camera driver and initializes the hardware parameters.
    *
@@ -112,11 +272,12 @@ public final class CameraManager {
       openCamera = theCamera;
     }
     theCamera.getCamera().setPreviewDisplay(holder);
-    theCamera.getCamera().setPreviewCallback(previewCallback);
     theCamera.getCamera().setDisplayOrientation(displayOrientation);
+    updateFrameRotation();
 
-    if (!initialized) {
+    if (!initialized || previewSizePolicyChanged) {
       initialized = true;
+      previewSizePolicyChanged = false;
       configManager.initFromCameraParameters(theCamera, width, height);
     }
 
@@ -144,6 +305,8 @@ public final class CameraManager {
       }
     }
     cameraObject.setPreviewDisplay(holder);
+    // Installed after the parameters are applied so pooled buffers match the final preview size.
+    installPreviewCallback(cameraObject);
   }
 
   /**
@@ -179,6 +342,42 @@ public final class CameraManager {
     }
   }
 
+  /**
+   * Lowers the preview frame rate, for when frames are decoded less often than the camera
+   * delivers them. The preview on screen runs at the same rate.
+   *
+   * @param maxFps frames per second still needed, 0 for the fastest rate the camera supports
+   * @return whether the camera accepted the new rate
+   */
+  public synchronized boolean setPreviewFpsLimit(int maxFps) {
+    OpenCamera theCamera = openCamera;
+    if (theCamera == null) {
+      return false;
+    }
+    Camera.Parameters parameters = theCamera.getCamera().getParameters();
+    int[] range = configManager.findPreviewFpsRange(parameters, maxFps);
+    if (range == null) {
+      return false;
+    }
+    int[] current = new int[2];
+    parameters.getPreviewFpsRange(current);
+    if (Arrays.equals(current, range)) {
+      // Nothing to change, auto focus keeps running
+      return true;
+    }
+    boolean wasAutoFocusManager = autoFocusManager != null;
+    if (wasAutoFocusManager) {
+      autoFocusManager.stop();
+      autoFocusManager = null;
+    }
+    boolean applied = configManager.setPreviewFpsRange(theCamera.getCamera(), range);
+    if (wasAutoFocusManager) {
+      autoFocusManager = new AutoFocusManager(theCamera.getCamera());
+      autoFocusManager.setAutofocusInterval(autofocusIntervalInMs);
+    }
+    return applied;
+  }
+
   public synchronized boolean isOpen() {
     return openCamera != null && openCamera.getCamera() != null;
   }
@@ -188,12 +387,11 @@ public final class CameraManager {
    */
   public synchronized void closeDriver() {
     if (isOpen()) {
+      previewBufferPool.detach();
       openCamera.getCamera().release();
       openCamera = null;
-      // Make sure to clear these each time we close the google.zxing.client.android.android.com.google.zxing.client.android.camera, so that any scanning rect
-      // requested by intent is forgotten.
-      // framingRect = null;
-      // framingRectInPreview = null;
+      // The requested framing rect is kept, it is mapped again for the next camera.
+      framingRectInPreview = null;
     }
   }
 
@@ -234,6 +432,21 @@ public final class CameraManager {
    * @return A MyPlanarYUVLuminanceSource instance.
    */
   public MyPlanarYUVLuminanceSource buildLuminanceSource(byte[] data, int width, int height) {
-    return new MyPlanarYUVLuminanceSource(data, width, height, 0, 0, width, height, false);
+    return buildLuminanceSource(data, width, height, getFramingRectInPreview());
+  }
+
+  /**
+   * Like {@link #buildLuminanceSource(byte[], int, int)} with an explicit crop, so callers can map
+   * result points back with the same rect.
+   *
+   * @param rect crop in preview coordinates, or null for the whole frame.
+   */
+  public MyPlanarYUVLuminanceSource buildLuminanceSource(byte[] data, int width, int height,
+                                                         Rect rect) {
+    if (rect == null || rect.right > width || rect.bottom > height) {
+      return new MyPlanarYUVLuminanceSource(data, width, height, 0, 0, width, height, false);
+    }
+    return new MyPlanarYUVLuminanceSource(data, width, height, rect.left, rect.top,
+        rect.width(), rect.height(), false);
   }
 }
@@ -0,0 +1,117 @@
+package com.google.zxing.client.android.camera;
+
+import android.graphics.ImageFormat;
+import android.hardware.Camera;
+
+import me.hetian.flutter_qr_reader.readerView.SimpleLog;
+
+/**
+ * A small ring of preview buffers handed to the camera through
+ * {@link Camera#addCallbackBuffer(byte[])}, so that preview frames are delivered into recycled
+ * arrays instead of a fresh {@code byte[]} per frame.
+ * <p>
+ * A buffer is only given back to the camera once its consumer calls {@link #release(byte[])}.
+ * A hit is a frame returned to the camera for reuse; a miss is a buffer that had to be allocated
+ * because the ring was (re)filled for a new camera or preview size.
+ */
+final class PreviewBufferPool {
+
+  private static final String TAG = PreviewBufferPool.class.getSimpleName();
+
+  private final byte[][] buffers;
+  private final boolean[] checkedOut;
+  private Camera camera;
+  private int bufferSize;
+  private long hits;
+  private long misses;
+
+  PreviewBufferPool(int capacity) {
+    this.buffers = new byte[capacity][];
+    this.checkedOut = new boolean[capacity];
+  }
+
+  /**
+   * Sizes the ring from the camera's current preview size and format and queues every buffer
+   * that is not held by a consumer. Must be called after the preview parameters have been
+   * applied, with the camera's buffer queue empty.
+   */
+  synchronized void attach(Camera camera) {
+    this.camera = camera;
+    Camera.Parameters parameters = camera.getParameters();
+    Camera.Size previewSize = parameters.getPreviewSize();
+    int bitsPerPixel = ImageFormat.getBitsPerPixel(parameters.getPreviewFormat());
+    if (bitsPerPixel <= 0) {
+      bitsPerPixel = ImageFormat.getBitsPerPixel(ImageFormat.NV21);
+    }
+    bufferSize = previewSize.width * previewSize.height * bitsPerPixel / 8;
+    for (int i = 0; i < buffers.length; i++) {
+      if (checkedOut[i]) {
+        // Re-queued (or resized) when its consumer releases it.
+        continue;
+      }
+      queue(i);
+    }
+    SimpleLog.i(TAG, "Queued " + buffers.length + " preview buffers of " + bufferSize + " bytes");
+  }
+
+  /**
+   * Forgets the camera. Buffers released afterwards are kept for the next attach.
+   */
+  synchronized void detach() {
+    camera = null;
+  }
+
+  /**
+   * Marks a buffer as handed out by the camera to the preview callback.
+   */
+  synchronized void checkOut(byte[] buffer) {
+    int index = indexOf(buffer);
+    if (index >= 0) {
+      checkedOut[index] = true;
+    }
+  }
+
+  /**
+   * Hands a buffer back to the camera once the consumer is done with it.
+   */
+  synchronized void release(byte[] buffer) {
+    int index = indexOf(buffer);
+    if (index < 0 || !checkedOut[index]) {
+      return;
+    }
+    checkedOut[index] = false;
+    if (camera != null) {
+      if (buffers[index].length == bufferSize) {
+        hits++;
+      }
+      queue(index);
+    }
+  }
+
+  private void queue(int index) {
+    if (buffers[index] == null || buffers[index].length != bufferSize) {
+      buffers[index] = new byte[bufferSize];
+      misses++;
+    }
+    camera.addCallbackBuffer(buffers[index]);
+  }
+
+  private int indexOf(byte[] buffer) {
+    if (buffer != null) {
+      for (int i = 0; i < buffers.length; i++) {
+        if (buffers[i] == buffer) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  synchronized long getHits() {
+    return hits;
+  }
+
+  synchronized long getMisses() {
+    return misses;
+  }
+}
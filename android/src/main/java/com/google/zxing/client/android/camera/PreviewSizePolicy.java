@@ -0,0 +1,154 @@
+package com.google.zxing.client.android.camera;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Point;
+
+import java.util.List;
+
+/**
+ * Chooses the preview size for decoding rather than for display: the smallest size on which the
+ * densest expected code still gets enough pixels per module, within a pixel budget that follows
+ * the CPU class of the device. Sizes close to the display aspect ratio are preferred, as long as
+ * one of them is large enough.
+ * <p>
+ * The densest code is given as its width in modules and the share of the preview's short side it
+ * spans when held at a comfortable distance, so small QR codes run on small frames while dense
+ * PDF417 gets the largest frame the device can decode in time.
+ */
+public final class PreviewSizePolicy {
+
+  public static final int CPU_CLASS_LOW = 0;
+  public static final int CPU_CLASS_MID = 1;
+  public static final int CPU_CLASS_HIGH = 2;
+
+  // QR code version 10
+  public static final int DEFAULT_CODE_MODULES = 57;
+  // Below this the binarizer loses the narrowest modules
+  private static final float MIN_PIXELS_PER_MODULE = 2.5f;
+  private static final float DEFAULT_CODE_COVERAGE = 0.5f;
+  // Largest preview decoded per CPU class
+  private static final int[] MAX_DECODE_PIXELS = {960 * 540, 1920 * 1080, 2560 * 1440};
+  // Aspect ratios this close to the closest one count as matching the display
+  private static final float ASPECT_TOLERANCE = 0.05f;
+
+  private final int maxPixels;
+  private int codeModules = DEFAULT_CODE_MODULES;
+  private float codeCoverage = DEFAULT_CODE_COVERAGE;
+
+  /**
+   * @param cpuClass one of {@link #CPU_CLASS_LOW}, {@link #CPU_CLASS_MID}, {@link #CPU_CLASS_HIGH}
+   */
+  public PreviewSizePolicy(int cpuClass) {
+    this.maxPixels = MAX_DECODE_PIXELS[Math.max(CPU_CLASS_LOW, Math.min(CPU_CLASS_HIGH, cpuClass))];
+  }
+
+  /**
+   * @return a policy with the pixel budget of this device's CPU class
+   */
+  public static PreviewSizePolicy forDevice(Context context) {
+    return new PreviewSizePolicy(getCpuClass(context));
+  }
+
+  /**
+   * Rough CPU class from the core count and the heap the system grants apps, which both follow
+   * the device tier.
+   */
+  public static int getCpuClass(Context context) {
+    int cores = Runtime.getRuntime().availableProcessors();
+    ActivityManager manager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+    int memoryClass = manager != null ? manager.getMemoryClass() : 0;
+    if (cores <= 2 || memoryClass < 96) {
+      return CPU_CLASS_LOW;
+    }
+    if (cores >= 8 && memoryClass >= 256) {
+      return CPU_CLASS_HIGH;
+    }
+    return CPU_CLASS_MID;
+  }
+
+  /**
+   * @param codeModules width in modules of the densest code to scan, such as 57 for a version 10
+   *                    QR code or about 300 for the PDF417 of a driving licence
+   */
+  public PreviewSizePolicy setCodeModules(int codeModules) {
+    this.codeModules = Math.max(1, codeModules);
+    return this;
+  }
+
+  /**
+   * @param codeCoverage share of the preview's short side the code spans, in (0, 1]
+   */
+  public PreviewSizePolicy setCodeCoverage(float codeCoverage) {
+    this.codeCoverage = codeCoverage > 0 && codeCoverage <= 1 ? codeCoverage : DEFAULT_CODE_COVERAGE;
+    return this;
+  }
+
+  /**
+   * @return the short side a preview needs for the densest code
+   */
+  int getRequiredShortSide() {
+    return (int) Math.ceil(codeModules * MIN_PIXELS_PER_MODULE / codeCoverage);
+  }
+
+  /**
+   * @param sizes            supported preview sizes
+   * @param screenResolution view size, for the aspect ratio
+   * @param minPixels        smallest preview still acceptable on screen
+   * @return the chosen size, or null when no size is within the budget
+   */
+  Point choose(List<Point> sizes, Point screenResolution, int minPixels) {
+    float screenAspect = aspect(screenResolution.x, screenResolution.y);
+    float closestAspectDiff = Float.POSITIVE_INFINITY;
+    for (Point size : sizes) {
+      if (fits(size, minPixels)) {
+        closestAspectDiff = Math.min(closestAspectDiff, Math.abs(aspect(size.x, size.y) - screenAspect));
+      }
+    }
+    if (closestAspectDiff == Float.POSITIVE_INFINITY) {
+      return null;
+    }
+
+    int required = getRequiredShortSide();
+    Point smallestMatching = null;
+    Point smallestOther = null;
+    Point largest = null;
+    for (Point size : sizes) {
+      if (!fits(size, minPixels)) {
+        continue;
+      }
+      boolean matching = Math.abs(aspect(size.x, size.y) - screenAspect) <= closestAspectDiff + ASPECT_TOLERANCE;
+      int shortSide = Math.min(size.x, size.y);
+      if (shortSide >= required) {
+        if (matching) {
+          smallestMatching = smaller(smallestMatching, size);
+        } else {
+          smallestOther = smaller(smallestOther, size);
+        }
+      }
+      if (largest == null || shortSide > Math.min(largest.x, largest.y)
+          || shortSide == Math.min(largest.x, largest.y) && matching) {
+        largest = size;
+      }
+    }
+    // A large enough frame matters more than its aspect ratio, the scan rect can crop it
+    if (smallestMatching != null) {
+      return smallestMatching;
+    }
+    return smallestOther != null ? smallestOther : largest;
+  }
+
+  private boolean fits(Point size, int minPixels) {
+    int pixels = size.x * size.y;
+    return pixels >= minPixels && pixels <= maxPixels;
+  }
+
+  private static Point smaller(Point current, Point candidate) {
+    return current == null || candidate.x * candidate.y < current.x * current.y ? candidate : current;
+  }
+
+  // Long side over short side, so it does not depend on orientation
+  private static float aspect(int width, int height) {
+    return (float) Math.max(width, height) / Math.min(width, height);
+  }
+}
@@ -3,8 +3,21 @@ package me.hetian.flutter_qr_reader;
 import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.zxing.ResultPoint;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import androidx.annotation.NonNull;
 
@@ -18,6 +31,7 @@ import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
 import io.flutter.plugin.common.MethodChannel.Result;
 import io.flutter.plugin.common.PluginRegistry.Registrar;
 import me.hetian.flutter_qr_reader.factorys.QrReaderFactory;
+import me.hetian.flutter_qr_reader.reader.ScanResultCache;
 
 /**
  * FlutterQrReaderPlugin
@@ -26,15 +40,22 @@ public class FlutterQrReaderPlugin implements FlutterPlugin, MethodCallHandler,
 
     private static final String CHANNEL_NAME = "me.hetian.plugins/flutter_qr_reader";
     private static final String CHANNEL_VIEW_NAME = "me.hetian.plugins/flutter_qr_reader/reader_view";
+    private static final String RESULT_CACHE_FILE = "flutter_qr_reader_results";
+    private static final int RESULT_CACHE_ENTRIES = 512;
 
     private MethodChannel channel;
 
     private Activity activity;
 
+    // 图片识别结果缓存，同一张未修改的图片不再重复识别
+    private ScanResultCache resultCache;
+
     @Override
     public void onAttachedToEngine(@NonNull FlutterPluginBinding binding) {
         channel = new MethodChannel(binding.getBinaryMessenger(), CHANNEL_NAME);
         channel.setMethodCallHandler(this);
+        resultCache = new ScanResultCache(
+                new File(binding.getApplicationContext().getCacheDir(), RESULT_CACHE_FILE), RESULT_CACHE_ENTRIES);
 
         binding.getPlatformViewRegistry().registerViewFactory(CHANNEL_VIEW_NAME, new QrReaderFactory(binding.getBinaryMessenger()));
     }
@@ -43,6 +64,21 @@ public class FlutterQrReaderPlugin implements FlutterPlugin, MethodCallHandler,
     public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
         if (call.method.equals("imgQrCode")) {
             this.imgQrCode(call, result);
+        } else if (call.method.equals("imgQrCodeBytes")) {
+            this.imgQrCodeBytes(call, result);
+        } else if (call.method.equals("imgQrCodeYuv")) {
+            this.imgQrCodeYuv(call, result);
+        } else if (call.method.equals("imgQrCodeBatch")) {
+            this.imgQrCodeBatch(call, result);
+        } else if (call.method.equals("imgQrCodeMulti")) {
+            this.imgQrCodeMulti(call, result);
+        } else if (call.method.equals("getImageDecodeStatistics")) {
+            HashMap<String, Object> stats = new HashMap<>();
+            stats.put("binarizer", QRCodeDecoder.getBinarizerStatistics());
+            stats.put("cache", resultCache.getStatistics());
+            result.success(stats);
+        } else if (call.method.equals("clearImageScanCache")) {
+            this.clearImageScanCache(result);
         } else {
             result.notImplemented();
         }
@@ -71,18 +107,29 @@ public class FlutterQrReaderPlugin implements FlutterPlugin, MethodCallHandler,
     class DecodeTask extends AsyncTask<String, Integer, String> {
 
         final private String filePath;
+        final private boolean parallel;
+        final private int rotation;
         final private Result result;
 
-        private DecodeTask(String filePath, Result result) {
+        private DecodeTask(String filePath, boolean parallel, int rotation, Result result) {
             super();
             this.filePath = filePath;
+            this.parallel = parallel;
+            this.rotation = rotation;
             this.result = result;
         }
 
         @Override
         protected String doInBackground(String... strs) {
-            // 解析二维码/条码
-            return QRCodeDecoder.syncDecodeQRCode(activity, filePath);
+            String text = cachedDecode(filePath, rotation, new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    // 解析二维码/条码，图片无法识别时抛出，不缓存
+                    return QRCodeDecoder.decodeQRCode(activity, filePath, rotation, parallel);
+                }
+            });
+            resultCache.save();
+            return text;
         }
 
         @Override
@@ -107,9 +154,251 @@ public class FlutterQrReaderPlugin implements FlutterPlugin, MethodCallHandler,
             result.error("File not found", null, null);
         }
 
-        new DecodeTask(filePath, result).execute(filePath);
+        // 多核并行识别
+        boolean parallel = Boolean.TRUE.equals(call.argument("parallel"));
+        new DecodeTask(filePath, parallel, rotationOf(call), result).execute(filePath);
+    }
+
+    /**
+     * 识别内存中的图片：编码过的图片文件内容，或给出 width、height 时的灰度、NV21 图像。
+     * 直接在通道传来的数组上解码，不写临时文件
+     */
+    void imgQrCodeBytes(MethodCall call, final Result result) {
+        final byte[] bytes = call.argument("bytes");
+        final Integer width = call.argument("width");
+        final Integer height = call.argument("height");
+        if (bytes == null || bytes.length == 0) {
+            result.error("Not found data", null, null);
+            return;
+        }
+        final boolean raw = width != null && height != null;
+        if (raw && (width <= 0 || height <= 0 || bytes.length < width * height)) {
+            result.error("Bad image size", null, null);
+            return;
+        }
+        Object rotationArgument = call.argument("rotation");
+        final int rotation = rotationArgument instanceof Number ? ((Number) rotationArgument).intValue() : 0;
+
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        QRCodeDecoder.getDecodeExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                String text = null;
+                try {
+                    text = raw
+                            ? QRCodeDecoder.syncDecodeQRCode(activity, bytes, width, height, rotation)
+                            : QRCodeDecoder.syncDecodeQRCode(activity, bytes, rotation);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                final String decoded = text;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (null == decoded) {
+                            result.error("not data", null, null);
+                        } else {
+                            result.success(decoded);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 识别其他相机插件给出的 YUV_420_888 帧，只需要 Y 平面及其 bytesPerRow、bytesPerPixel，
+     * 在解码线程池中按步长直接读取，不重新打包
+     */
+    void imgQrCodeYuv(MethodCall call, final Result result) {
+        final byte[] bytes = call.argument("bytes");
+        final Integer width = call.argument("width");
+        final Integer height = call.argument("height");
+        if (bytes == null || width == null || height == null) {
+            result.error("Not found data", null, null);
+            return;
+        }
+        Integer bytesPerRow = call.argument("bytesPerRow");
+        Integer bytesPerPixel = call.argument("bytesPerPixel");
+        final int rowStride = bytesPerRow != null ? bytesPerRow : width;
+        final int pixelStride = bytesPerPixel != null ? bytesPerPixel : 1;
+
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        QRCodeDecoder.getDecodeExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                String text = null;
+                String error = null;
+                try {
+                    text = QRCodeDecoder.syncDecodeYuvFrame(activity, bytes, width, height, rowStride, pixelStride);
+                } catch (IllegalArgumentException e) {
+                    error = e.getMessage();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                final String decoded = text;
+                final String badFrame = error;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (badFrame != null) {
+                            result.error("Bad frame", badFrame, null);
+                        } else {
+                            // 大多数帧里没有码，返回 null 而不是错误
+                            result.success(decoded);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 先查识别结果缓存，未命中时识别并缓存，没有码的结果也缓存。同一张图片同时只识别一次
+     *
+     * @param decode 返回图片里的内容，没有码时返回 null，图片无法识别时抛出异常，不缓存
+     * @return 图片里的内容 或 null
+     */
+    private String cachedDecode(String filePath, int rotation, Callable<String> decode) {
+        try {
+            return resultCache.get(ScanResultCache.keyOf(new File(filePath), rotation), decode);
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    void clearImageScanCache(final Result result) {
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        QRCodeDecoder.getDecodeExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                resultCache.clear();
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        result.success(null);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 调用方给出的摆正图片需要顺时针旋转的角度，未给出时按 EXIF 方向
+     */
+    private static int rotationOf(MethodCall call) {
+        Object rotation = call.argument("rotation");
+        return rotation instanceof Number ? ((Number) rotation).intValue() : QRCodeDecoder.ROTATION_FROM_EXIF;
     }
 
+    /**
+     * 批量识别图片，返回 路径 -> 内容 的 Map，未识别到的图片对应 null
+     */
+    void imgQrCodeBatch(MethodCall call, final Result result) {
+        final List<String> files = call.argument("files");
+        if (files == null) {
+            result.error("Not found data", null, null);
+            return;
+        }
+        final Map<String, String> decoded = new HashMap<>();
+        if (files.isEmpty()) {
+            result.success(decoded);
+            return;
+        }
+
+        // 所有图片共用批量识别线程池，最后一张识别完成时在主线程返回结果。
+        // 同一张图片可能正由解码线程池中的并行识别处理，等待它时不能占用解码线程池的线程
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        final AtomicInteger remaining = new AtomicInteger(files.size());
+        Executor executor = QRCodeDecoder.getBatchExecutor();
+        for (final String filePath : files) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    String text = null;
+                    try {
+                        if (filePath != null && new File(filePath).exists()) {
+                            text = cachedDecode(filePath, QRCodeDecoder.ROTATION_FROM_EXIF, new Callable<String>() {
+                                @Override
+                                public String call() throws IOException {
+                                    return QRCodeDecoder.decodeQRCodeWithThreadReader(filePath);
+                                }
+                            });
+                        }
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                    synchronized (decoded) {
+                        decoded.put(filePath, text);
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        resultCache.save();
+                        mainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                result.success(decoded);
+                            }
+                        });
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 识别图片中的所有码，返回 {text, format, points} 列表，points 为摆正（并缩小）后图片中的坐标。
+     * tiled 为 true 时分块识别原图，points 为摆正后原图中的坐标
+     */
+    void imgQrCodeMulti(MethodCall call, final Result result) {
+        final String filePath = call.argument("file");
+        final int rotation = rotationOf(call);
+        final boolean tiled = Boolean.TRUE.equals(call.argument("tiled"));
+        if (filePath == null || !new File(filePath).exists()) {
+            result.error("File not found", null, null);
+            return;
+        }
+
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        // 分块识别会等待线程池中的各块，不能占用线程池自己的线程
+        Executor executor = tiled ? AsyncTask.THREAD_POOL_EXECUTOR : QRCodeDecoder.getDecodeExecutor();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Map<String, Object>> codes = new ArrayList<>();
+                try {
+                    List<com.google.zxing.Result> results = tiled
+                            ? QRCodeDecoder.syncDecodeTiled(activity, filePath, rotation)
+                            : QRCodeDecoder.syncDecodeMultiple(activity, filePath, rotation);
+                    for (com.google.zxing.Result decoded : results) {
+                        Map<String, Object> code = new HashMap<>();
+                        code.put("text", decoded.getText());
+                        code.put("format", decoded.getBarcodeFormat().name());
+                        List<String> points = new ArrayList<>();
+                        if (decoded.getResultPoints() != null) {
+                            for (ResultPoint point : decoded.getResultPoints()) {
+                                if (point != null) {
+                                    points.add(point.getX() + "," + point.getY());
+                                }
+                            }
+                        }
+                        code.put("points", points);
+                        codes.add(code);
+                    }
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        result.success(codes);
+                    }
+                });
+            }
+        });
+    }
 
     @Override
     public void onDetachedFromEngine(@NonNull FlutterPluginBinding binding) {
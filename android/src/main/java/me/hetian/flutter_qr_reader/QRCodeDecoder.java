@@ -3,22 +3,49 @@ package me.hetian.flutter_qr_reader;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.graphics.Matrix;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.media.ExifInterface;
+import android.os.Build;
 import android.util.Log;
 
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.BinaryBitmap;
 import com.google.zxing.DecodeHintType;
-import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
 import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
 import com.google.zxing.common.HybridBinarizer;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import me.hetian.flutter_qr_reader.reader.BinarizerStrategy;
+import me.hetian.flutter_qr_reader.reader.BinarizerWorkspace;
+import me.hetian.flutter_qr_reader.reader.GrayscaleLuminanceSource;
 import me.hetian.flutter_qr_reader.reader.MyMultiFormatReader;
+import me.hetian.flutter_qr_reader.reader.MyMultipleFormatReader;
+import me.hetian.flutter_qr_reader.reader.StridedYUVLuminanceSource;
+import me.hetian.flutter_qr_reader.readerView.SimpleLog;
 
 /**
  * 描述:解析二维码图片
@@ -28,6 +55,46 @@ public class QRCodeDecoder {
     public static final Map<DecodeHintType, Object> HINTS = new EnumMap<>(DecodeHintType.class);
     private static final String TAG = "QRCodeDecoder";
 
+    /**
+     * 按图片 EXIF 中记录的方向摆正后识别
+     */
+    public static final int ROTATION_FROM_EXIF = -1;
+
+    // 并行识别时的码制分组，顺序与串行识别时的读取顺序一致
+    private static final List<Set<BarcodeFormat>> READER_GROUPS = new ArrayList<>();
+    private static final int MAX_DECODE_THREADS = 8;
+    private static ThreadPoolExecutor decodeExecutor;
+    private static ThreadPoolExecutor batchExecutor;
+
+    // 分块识别时每块解码后的边长，相邻块重叠一半
+    private static final int TILE_SIZE = 1024;
+
+    // 光照均匀、对比度高的图片先用全局阈值二值化，识别失败再用 HybridBinarizer
+    private static final BinarizerStrategy BINARIZER_STRATEGY = new BinarizerStrategy();
+
+    // 每个线程保留上次解码图片用的 Bitmap，下一张图片通过 inBitmap 复用其内存
+    private static final ThreadLocal<Bitmap> THREAD_BITMAP = new ThreadLocal<>();
+
+    // 每个线程一个已配置好的解码器，批量识别时不必每张图都重建
+    private static final ThreadLocal<MyMultiFormatReader> THREAD_READER =
+            new ThreadLocal<MyMultiFormatReader>() {
+                @Override
+                protected MyMultiFormatReader initialValue() {
+                    MyMultiFormatReader reader = new MyMultiFormatReader();
+                    reader.setHints(HINTS);
+                    return reader;
+                }
+            };
+
+    // 连续识别同样大小的视频帧时，二值化用的数组在线程内复用
+    private static final ThreadLocal<BinarizerWorkspace> THREAD_WORKSPACE =
+            new ThreadLocal<BinarizerWorkspace>() {
+                @Override
+                protected BinarizerWorkspace initialValue() {
+                    return new BinarizerWorkspace();
+                }
+            };
+
     static {
         List<BarcodeFormat> allFormats = new ArrayList<>();
         allFormats.add(BarcodeFormat.AZTEC);
@@ -50,19 +117,71 @@ public class QRCodeDecoder {
         HINTS.put(DecodeHintType.TRY_HARDER, BarcodeFormat.QR_CODE);
         HINTS.put(DecodeHintType.POSSIBLE_FORMATS, allFormats);
         HINTS.put(DecodeHintType.CHARACTER_SET, "utf-8");
+
+        READER_GROUPS.add(EnumSet.of(BarcodeFormat.QR_CODE));
+        READER_GROUPS.add(EnumSet.of(BarcodeFormat.DATA_MATRIX, BarcodeFormat.AZTEC));
+        READER_GROUPS.add(EnumSet.of(BarcodeFormat.PDF_417, BarcodeFormat.MAXICODE));
+        Set<BarcodeFormat> oneD = EnumSet.copyOf(allFormats);
+        for (Set<BarcodeFormat> group : READER_GROUPS) {
+            oneD.removeAll(group);
+        }
+        READER_GROUPS.add(oneD);
     }
 
     private QRCodeDecoder() {
     }
 
     /**
-     * 同步解析本地图片二维码。该方法是耗时操作，请在子线程中调用。
+     * 同步解析本地图片二维码，按 EXIF 方向摆正。该方法是耗时操作，请在子线程中调用。
      *
      * @param picturePath 要解析的二维码图片本地路径
      * @return 返回二维码图片里的内容 或 null
      */
     public static String syncDecodeQRCode(Context context, String picturePath) {
-        return syncDecodeQRCode(context, getDecodeAbleBitmap(picturePath));
+        return syncDecodeQRCode(context, picturePath, ROTATION_FROM_EXIF);
+    }
+
+    /**
+     * 同步解析本地图片二维码。该方法是耗时操作，请在子线程中调用。
+     *
+     * @param picturePath 要解析的二维码图片本地路径
+     * @param rotation    摆正图片需要顺时针旋转的角度，或 {@link #ROTATION_FROM_EXIF}
+     * @return 返回二维码图片里的内容 或 null
+     */
+    public static String syncDecodeQRCode(Context context, String picturePath, int rotation) {
+        try {
+            return decodeQRCode(context, picturePath, rotation, false);
+        } catch (IOException e) {
+            return null;
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 同步解析本地图片二维码，区分图片中没有码与图片无法识别，供缓存识别结果使用。该方法是耗时操作，请在子线程中调用。
+     *
+     * @param picturePath 要解析的二维码图片本地路径
+     * @param rotation    摆正图片需要顺时针旋转的角度，或 {@link #ROTATION_FROM_EXIF}
+     * @param parallel    是否多核并行识别，见 {@link #syncDecodeQRCodeParallel(Context, String, int)}
+     * @return 返回二维码图片里的内容，图片中没有码时为 null
+     * @throws IOException 图片无法读取或解码，或识别被中断
+     */
+    public static String decodeQRCode(Context context, String picturePath, int rotation, boolean parallel)
+            throws IOException {
+        GrayscaleLuminanceSource source = requireLuminance(picturePath, rotation);
+        QRCodeDecoder.context = context;
+        if (parallel) {
+            Result result = decodeParallel(source);
+            if (result == null && Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Decoding " + picturePath + " was interrupted");
+            }
+            return result == null ? null : result.getText();
+        }
+        MyMultiFormatReader multiFormatReader = new MyMultiFormatReader();
+        multiFormatReader.setHints(HINTS);
+        return decodeSource(source, multiFormatReader);
     }
 
     /**
@@ -73,72 +192,706 @@ public class QRCodeDecoder {
      */
     public static String syncDecodeQRCode(Context context, Bitmap bitmap) {
         QRCodeDecoder.context = context;
-        Result result = null;
         MyMultiFormatReader multiFormatReader = new MyMultiFormatReader();
         multiFormatReader.setHints(HINTS);
+        return syncDecodeQRCode(GrayscaleLuminanceSource.fromBitmap(bitmap, 0), multiFormatReader);
+    }
+
+    /**
+     * 同步解析内存中编码过的图片（JPEG、PNG 等）里的二维码，不经过临时文件。该方法是耗时操作，请在子线程中调用。
+     *
+     * @param data     图片文件的内容
+     * @param rotation 摆正图片需要顺时针旋转的角度，内存中的图片不读取 EXIF 方向
+     * @return 返回二维码图片里的内容 或 null
+     */
+    public static String syncDecodeQRCode(Context context, byte[] data, int rotation) {
+        GrayscaleLuminanceSource source = getDecodeAbleLuminance(null, data, rotation);
+        if (source == null) {
+            return null;
+        }
+        QRCodeDecoder.context = context;
+        MyMultiFormatReader multiFormatReader = new MyMultiFormatReader();
+        multiFormatReader.setHints(HINTS);
+        return syncDecodeQRCode(source, multiFormatReader);
+    }
+
+    /**
+     * 同步解析内存中的灰度或 NV21 图像里的二维码，直接在传入的数组上识别，不做拷贝。该方法是耗时操作，请在子线程中调用。
+     *
+     * @param yPlane   灰度图像，或以 Y 平面开头的 NV21 等平面格式图像，至少 width * height 字节
+     * @param rotation 摆正图像需要顺时针旋转的角度，旋转 90、270 度时会拷贝一份亮度数据
+     * @return 返回二维码图片里的内容 或 null
+     */
+    public static String syncDecodeQRCode(Context context, byte[] yPlane, int width, int height, int rotation) {
+        if (width <= 0 || height <= 0 || yPlane.length < width * height) {
+            throw new IllegalArgumentException("Image data smaller than " + width + "x" + height);
+        }
+        GrayscaleLuminanceSource source = new GrayscaleLuminanceSource(yPlane, width, height);
+        // 180 度不用转：二维码各方向都能识别，TRY_HARDER 下一维码也会反向读取
+        rotation = (rotation % 360 + 360) % 360;
+        if (rotation == 90) {
+            source = source.rotateClockwise();
+        } else if (rotation == 270) {
+            source = (GrayscaleLuminanceSource) source.rotateCounterClockwise();
+        }
+        QRCodeDecoder.context = context;
+        MyMultiFormatReader multiFormatReader = new MyMultiFormatReader();
+        multiFormatReader.setHints(HINTS);
+        return syncDecodeQRCode(source, multiFormatReader);
+    }
+
+    /**
+     * 同步解析其他相机插件给出的 YUV_420_888 帧，按行、像素步长直接读取 Y 平面，不重新打包。
+     * 复用当前线程的解码器和二值化数组，适合在线程池中连续识别。该方法是耗时操作，请在子线程中调用。
+     * <p>
+     * 帧按相机方向识别：二维码各方向都能识别，TRY_HARDER 下竖向的一维码也会旋转后再读。
+     *
+     * @param yPlane      Y 平面
+     * @param rowStride   相邻两行起点间的字节数
+     * @param pixelStride 一行中相邻两个像素间的字节数
+     * @return 返回帧里的内容 或 null
+     */
+    public static String syncDecodeYuvFrame(Context context, byte[] yPlane, int width, int height,
+                                            int rowStride, int pixelStride) {
+        StridedYUVLuminanceSource source =
+                new StridedYUVLuminanceSource(yPlane, width, height, rowStride, pixelStride);
+        QRCodeDecoder.context = context;
+        MyMultiFormatReader reader = THREAD_READER.get();
+        try {
+            return BINARIZER_STRATEGY.decode(reader, source, THREAD_WORKSPACE.get()).getText();
+        } catch (NotFoundException e) {
+            return null;
+        } finally {
+            reader.reset();
+        }
+    }
+
+    /**
+     * 同步解析本地图片二维码，复用当前线程的解码器，适合在线程池中批量识别。该方法是耗时操作，请在子线程中调用。
+     *
+     * @param picturePath 要解析的二维码图片本地路径
+     * @return 返回二维码图片里的内容 或 null
+     */
+    public static String syncDecodeQRCodeWithThreadReader(String picturePath) {
         try {
-            int width = bitmap.getWidth();
-            int height = bitmap.getHeight();
+            return decodeQRCodeWithThreadReader(picturePath);
+        } catch (IOException e) {
+            return null;
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
 
-            int[] pixels = new int[width * height];
-            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+    /**
+     * 同 {@link #syncDecodeQRCodeWithThreadReader(String)}，区分图片中没有码与图片无法识别，供缓存识别结果使用。
+     *
+     * @param picturePath 要解析的二维码图片本地路径
+     * @return 返回二维码图片里的内容，图片中没有码时为 null
+     * @throws IOException 图片无法读取或解码
+     */
+    public static String decodeQRCodeWithThreadReader(String picturePath) throws IOException {
+        return decodeSource(requireLuminance(picturePath, ROTATION_FROM_EXIF), THREAD_READER.get());
+    }
+
+    private static GrayscaleLuminanceSource requireLuminance(String picturePath, int rotation) throws IOException {
+        GrayscaleLuminanceSource source = getDecodeAbleLuminance(picturePath, rotation);
+        if (source == null) {
+            throw new IOException("Can not decode image " + picturePath);
+        }
+        return source;
+    }
+
+    private static String syncDecodeQRCode(GrayscaleLuminanceSource source,
+                                           MyMultiFormatReader multiFormatReader) {
+        try {
+            return decodeSource(source, multiFormatReader);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
 
-            RGBLuminanceSource source = new RGBLuminanceSource(width, height, pixels);
-            BinaryBitmap bitmap1 = new BinaryBitmap(new HybridBinarizer(source));
-            result = multiFormatReader.decodeWithState(bitmap1);
+    /**
+     * @return 返回二维码图片里的内容，没有码时为 null。其他错误照常抛出
+     */
+    private static String decodeSource(GrayscaleLuminanceSource source,
+                                       MyMultiFormatReader multiFormatReader) {
+        try {
+            Result result = BINARIZER_STRATEGY.decode(multiFormatReader, source);
             Log.i(TAG, "syncDecodeQRCode: " + result);
             return result.getText();
-        } catch (Exception e) {
-            e.printStackTrace();
+        } catch (NotFoundException e) {
+            // Try the other orientation
+        } finally {
             multiFormatReader.reset();
-            try {
-                Matrix matrix = new Matrix();
-                matrix.setRotate(90);
-                // 创建新的图片
-                Bitmap resizedBitmap = Bitmap.createBitmap(bitmap, 0, 0,
-                        bitmap.getWidth(), bitmap.getHeight(), matrix, true);
-                int width = resizedBitmap.getWidth();
-                int height = resizedBitmap.getHeight();
-                Log.i(TAG, "syncDecodeQRCode: " + width + "--" + height);
-
-                int[] pixels = new int[width * height];
-                resizedBitmap.getPixels(pixels, 0, width, 0, 0, width, height);
-                RGBLuminanceSource source = new RGBLuminanceSource(width, height, pixels);
-                result = multiFormatReader.decode(new BinaryBitmap(new HybridBinarizer(source)), HINTS);
-                return result.getText();
-            } catch (Throwable e2) {
-                e2.printStackTrace();
+        }
+        try {
+            // 摆正的方向识别失败时（方向信息缺失或有误），在亮度数据上旋转 90 度再试
+            GrayscaleLuminanceSource rotated = source.rotateClockwise();
+            Log.i(TAG, "syncDecodeQRCode: " + rotated.getWidth() + "--" + rotated.getHeight());
+            // 解码器已按 HINTS 配置好，无需重建
+            return BINARIZER_STRATEGY.decode(multiFormatReader, rotated).getText();
+        } catch (NotFoundException e) {
+            return null;
+        } finally {
+            multiFormatReader.reset();
+        }
+    }
+
+    /**
+     * 同步解析本地图片中的所有码，按 EXIF 方向摆正，未识别到时再尝试旋转后的图片。该方法是耗时操作，请在子线程中调用。
+     *
+     * @param picturePath 要解析的二维码图片本地路径
+     * @return 每个不同的码一个结果，未识别到时为空列表
+     */
+    public static List<Result> syncDecodeMultiple(Context context, String picturePath) {
+        return syncDecodeMultiple(context, picturePath, ROTATION_FROM_EXIF);
+    }
+
+    /**
+     * 同步解析本地图片中的所有码，未识别到时再尝试旋转后的图片。该方法是耗时操作，请在子线程中调用。
+     *
+     * @param picturePath 要解析的二维码图片本地路径
+     * @param rotation    摆正图片需要顺时针旋转的角度，或 {@link #ROTATION_FROM_EXIF}
+     * @return 每个不同的码一个结果，未识别到时为空列表
+     */
+    public static List<Result> syncDecodeMultiple(Context context, String picturePath, int rotation) {
+        GrayscaleLuminanceSource source = getDecodeAbleLuminance(picturePath, rotation);
+        if (source == null) {
+            return new ArrayList<>();
+        }
+        QRCodeDecoder.context = context;
+        MyMultipleFormatReader reader = new MyMultipleFormatReader();
+        reader.setHints(HINTS);
+        Result[] results = decodeMultiple(reader, source);
+        if (results.length == 0) {
+            results = decodeMultiple(reader, source.rotateClockwise());
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 分块识别本地大图中的所有码，按 EXIF 方向摆正。该方法是耗时操作，请在子线程中调用，不要在
+     * {@link #getDecodeExecutor()} 的线程中调用。
+     *
+     * @param picturePath 要解析的二维码图片本地路径
+     * @return 每个不同的码一个结果，坐标为摆正后原图中的坐标，未识别到时为空列表
+     */
+    public static List<Result> syncDecodeTiled(Context context, String picturePath) {
+        return syncDecodeTiled(context, picturePath, ROTATION_FROM_EXIF);
+    }
+
+    /**
+     * 分块识别本地大图中的所有码，适合大照片中的小码：缩小到约 400 像素宽再识别时这些码只剩几个像素。
+     * <p>
+     * 图片用 {@link BitmapRegionDecoder} 逐级切成相互重叠一半的块：第一级按原始分辨率，每块
+     * {@value #TILE_SIZE} 像素见方，之后每级采样率和块在原图中的边长都加倍，直到一块覆盖整张图。
+     * 边长不超过块一半的码总能完整落在某一块中，所以每个尺寸的码都在某一级完整出现，
+     * 且（除第一级外）解码后至少有 {@value #TILE_SIZE} / 4 像素。各块在线程池中解码和识别，
+     * 块解码后不超过 {@value #TILE_SIZE} 像素见方，同时只有与线程数相同的块在内存中。
+     * 结果按码制和内容去重合并，分辨率高的一级优先。
+     * 该方法是耗时操作，请在子线程中调用，不要在 {@link #getDecodeExecutor()} 的线程中调用。
+     *
+     * @param picturePath 要解析的二维码图片本地路径
+     * @param rotation    摆正图片需要顺时针旋转的角度，或 {@link #ROTATION_FROM_EXIF}
+     * @return 每个不同的码一个结果，坐标为摆正后原图中的坐标，未识别到时为空列表
+     */
+    public static List<Result> syncDecodeTiled(Context context, String picturePath, int rotation) {
+        if (rotation == ROTATION_FROM_EXIF) {
+            rotation = getExifRotation(picturePath);
+        }
+        rotation = (rotation % 360 + 360) % 360;
+        final BitmapRegionDecoder regionDecoder;
+        try {
+            regionDecoder = BitmapRegionDecoder.newInstance(picturePath, false);
+        } catch (IOException e) {
+            // 不支持按区域解码的格式（如 GIF），只识别缩小后的整图
+            return syncDecodeMultiple(context, picturePath, rotation);
+        }
+        QRCodeDecoder.context = context;
+        final int width = regionDecoder.getWidth();
+        final int height = regionDecoder.getHeight();
+        final int tileRotation = rotation;
+        List<Future<Result[]>> futures = new ArrayList<>();
+        Map<String, Result> merged = new LinkedHashMap<>();
+        try {
+            for (int sampleSize = 1; ; sampleSize *= 2) {
+                final int levelSampleSize = sampleSize;
+                int span = TILE_SIZE * sampleSize;
+                int tileWidth = Math.min(span, width);
+                int tileHeight = Math.min(span, height);
+                for (int top : tileStarts(height, tileHeight, span / 2)) {
+                    for (int left : tileStarts(width, tileWidth, span / 2)) {
+                        final Rect tile = new Rect(left, top, left + tileWidth, top + tileHeight);
+                        futures.add(getDecodeExecutor().submit(new Callable<Result[]>() {
+                            @Override
+                            public Result[] call() {
+                                return decodeTile(regionDecoder, tile, levelSampleSize, tileRotation, width, height);
+                            }
+                        }));
+                    }
+                }
+                if (span >= width && span >= height) {
+                    break;
+                }
+            }
+
+            // In submission order, so the finer levels with more precise points win
+            for (Future<Result[]> future : futures) {
+                try {
+                    merge(merged, future.get());
+                } catch (ExecutionException e) {
+                    SimpleLog.w(TAG, "Tile failed", e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Future<Result[]> future : futures) {
+                future.cancel(true);
+            }
+            // Waits for a region being decoded
+            regionDecoder.recycle();
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    /**
+     * @param length 图片沿这一边的长度
+     * @param tile   块沿这一边的长度
+     * @param step   相邻两块起点的距离
+     * @return 沿一边各块的起点。最后一块贴齐边缘，同一级的块大小相同，线程的 Bitmap 总能复用
+     */
+    private static List<Integer> tileStarts(int length, int tile, int step) {
+        List<Integer> starts = new ArrayList<>();
+        for (int start = 0; ; start += step) {
+            if (start + tile >= length) {
+                starts.add(Math.max(0, length - tile));
+                return starts;
+            }
+            starts.add(start);
+        }
+    }
+
+    /**
+     * @param tile       原图中的区域
+     * @param sampleSize 解码时的采样率
+     * @param width      原图宽度
+     * @param height     原图高度
+     * @return 块中的码，坐标已换算到摆正后的原图中
+     */
+    private static Result[] decodeTile(BitmapRegionDecoder regionDecoder, Rect tile, int sampleSize,
+                                       int rotation, int width, int height) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        options.inMutable = true;
+        options.inSampleSize = sampleSize;
+        Bitmap reusable = THREAD_BITMAP.get();
+        // The region decoder draws into inBitmap without resizing it, so only an exact fit is reused.
+        // A tile cut to the image size may not divide by the sample size, its decoded size is not known.
+        if (reusable != null && !reusable.isRecycled() && reusable.isMutable()
+                && reusable.getConfig() == Bitmap.Config.RGB_565
+                && tile.width() % sampleSize == 0 && tile.height() % sampleSize == 0
+                && reusable.getWidth() == tile.width() / sampleSize
+                && reusable.getHeight() == tile.height() / sampleSize) {
+            options.inBitmap = reusable;
+        }
+        Bitmap bitmap = null;
+        try {
+            bitmap = regionDecoder.decodeRegion(tile, options);
+        } catch (IllegalArgumentException e) {
+            if (options.inBitmap == null) {
+                throw e;
+            }
+        }
+        // A bitmap that can not be reused fails with an exception or a null bitmap
+        if (bitmap == null && options.inBitmap != null) {
+            options.inBitmap = null;
+            bitmap = regionDecoder.decodeRegion(tile, options);
+        }
+        if (bitmap == null) {
+            return new Result[0];
+        }
+        if (bitmap != reusable && reusable != null) {
+            THREAD_BITMAP.remove();
+            reusable.recycle();
+        }
+        GrayscaleLuminanceSource source = GrayscaleLuminanceSource.fromBitmap(bitmap, rotation);
+        THREAD_BITMAP.set(bitmap);
+
+        MyMultipleFormatReader reader = new MyMultipleFormatReader();
+        reader.setHints(HINTS);
+        Result[] results = decodeMultiple(reader, source);
+        // The rotated tile is a crop of the rotated image, only its corner moves
+        int left;
+        int top;
+        switch (rotation) {
+            case 90:
+                left = height - tile.bottom;
+                top = tile.left;
+                break;
+            case 180:
+                left = width - tile.right;
+                top = height - tile.bottom;
+                break;
+            case 270:
+                left = tile.top;
+                top = width - tile.right;
+                break;
+            default:
+                left = tile.left;
+                top = tile.top;
+                break;
+        }
+        for (int i = 0; i < results.length; i++) {
+            results[i] = transform(results[i], sampleSize, left, top);
+        }
+        return results;
+    }
+
+    private static Result transform(Result result, float scale, int left, int top) {
+        ResultPoint[] points = result.getResultPoints();
+        ResultPoint[] transformed = null;
+        if (points != null) {
+            transformed = new ResultPoint[points.length];
+            for (int i = 0; i < points.length; i++) {
+                if (points[i] != null) {
+                    transformed[i] = new ResultPoint(points[i].getX() * scale + left,
+                            points[i].getY() * scale + top);
+                }
             }
+        }
+        Result moved = new Result(result.getText(), result.getRawBytes(), result.getNumBits(),
+                transformed, result.getBarcodeFormat(), result.getTimestamp());
+        moved.putAllMetadata(result.getResultMetadata());
+        return moved;
+    }
+
+    /**
+     * 按码制和内容去重，先合并的结果优先
+     */
+    private static void merge(Map<String, Result> merged, Result[] results) {
+        for (Result result : results) {
+            String key = result.getBarcodeFormat() + ":" + result.getText();
+            if (!merged.containsKey(key)) {
+                merged.put(key, result);
+            }
+        }
+    }
+
+    private static Result[] decodeMultiple(MyMultipleFormatReader reader, LuminanceSource source) {
+        try {
+            return BINARIZER_STRATEGY.decodeMultiple(reader, source);
+        } catch (NotFoundException e) {
+            return new Result[0];
+        }
+    }
+
+    /**
+     * 并行解析本地图片二维码，按 EXIF 方向摆正。该方法是耗时操作，请在子线程中调用。
+     *
+     * @param picturePath 要解析的二维码图片本地路径
+     * @return 返回二维码图片里的内容 或 null
+     */
+    public static String syncDecodeQRCodeParallel(Context context, String picturePath) {
+        return syncDecodeQRCodeParallel(context, picturePath, ROTATION_FROM_EXIF);
+    }
+
+    /**
+     * 并行解析本地图片二维码：各组码制与摆正后、再旋转 90 度两个方向同时识别。该方法是耗时操作，请在子线程中调用。
+     *
+     * @param picturePath 要解析的二维码图片本地路径
+     * @param rotation    摆正图片需要顺时针旋转的角度，或 {@link #ROTATION_FROM_EXIF}
+     * @return 返回二维码图片里的内容 或 null
+     */
+    public static String syncDecodeQRCodeParallel(Context context, String picturePath, int rotation) {
+        GrayscaleLuminanceSource source = getDecodeAbleLuminance(picturePath, rotation);
+        if (source == null) {
+            return null;
+        }
+        QRCodeDecoder.context = context;
+        try {
+            Result result = decodeParallel(source);
+            return result == null ? null : result.getText();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
             return null;
         }
     }
 
     /**
-     * 将本地图片文件转换成可解码二维码的 Bitmap。为了避免图片太大，这里对图片进行了压缩。感谢 https://github.com/devilsen 提的 PR
+     * Runs every reader group on both orientations on a bounded pool. The first success in
+     * sequential order wins, so the result matches {@link #syncDecodeQRCode(Context, String)}
+     * when several readers could decode the image.
+     *
+     * @param source 要解析的二维码图片的亮度
+     * @return the decoded result, or null when there is no code or decoding was interrupted
+     * @throws IllegalStateException when a reader group failed and none found a code
+     */
+    static Result decodeParallel(GrayscaleLuminanceSource source) {
+        int groups = READER_GROUPS.size();
+        Future<?>[] futures = new Future<?>[groups * 2];
+        CompletionService<Result> completionService =
+                new ExecutorCompletionService<>(getDecodeExecutor());
+        // Indexed by priority, a lower index is tried earlier when decoding sequentially
+        Result[] results = new Result[futures.length];
+        boolean[] done = new boolean[futures.length];
+        Throwable failure = null;
+        int submitted = 0;
+        try {
+            submitted += submitOrientation(completionService, futures, 0, source);
+
+            // Rotate while the first orientation is being decoded
+            submitted += submitOrientation(completionService, futures, groups, source.rotateClockwise());
+            for (int i = 0; i < futures.length; i++) {
+                done[i] = futures[i] == null;
+            }
+
+            for (int received = 0; received < submitted; received++) {
+                Future<Result> future = completionService.take();
+                int index = indexOf(futures, future);
+                done[index] = true;
+                try {
+                    results[index] = future.get();
+                } catch (ExecutionException e) {
+                    SimpleLog.w(TAG, "Reader group failed", e);
+                    failure = e.getCause();
+                }
+                // The winner is the first success once everything before it has finished
+                for (int i = 0; i < futures.length && done[i]; i++) {
+                    if (results[i] != null) {
+                        return results[i];
+                    }
+                }
+            }
+            // Without a code a failed group may have missed one, that is not a "no code"
+            if (failure != null) {
+                throw new IllegalStateException("Reader group failed", failure);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Future<?> future : futures) {
+                if (future != null) {
+                    future.cancel(true);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int submitOrientation(CompletionService<Result> completionService,
+                                         Future<?>[] futures, int firstIndex,
+                                         LuminanceSource source) {
+        // 2D readers only read the black matrix, so one binarization is shared by them. The 1D
+        // readers fetch rows through the binarizer, which is not thread safe, and get their own.
+        final BinaryBitmap shared = new BinaryBitmap(new HybridBinarizer(source));
+        try {
+            shared.getBlackMatrix();
+        } catch (NotFoundException e) {
+            return 0;
+        }
+        int count = 0;
+        for (int group = 0; group < READER_GROUPS.size(); group++) {
+            final Set<BarcodeFormat> formats = READER_GROUPS.get(group);
+            if (formats.isEmpty()) {
+                continue;
+            }
+            final boolean oneD = group == READER_GROUPS.size() - 1;
+            final BinaryBitmap image = oneD
+                    ? new BinaryBitmap(new HybridBinarizer(source)) : shared;
+            futures[firstIndex + group] = completionService.submit(new Callable<Result>() {
+                @Override
+                public Result call() {
+                    Map<DecodeHintType, Object> hints = new EnumMap<>(HINTS);
+                    hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+                    MyMultiFormatReader reader = new MyMultiFormatReader();
+                    reader.setHints(hints);
+                    try {
+                        return reader.decodeWithState(image);
+                    } catch (NotFoundException e) {
+                        return null;
+                    }
+                }
+            });
+            count++;
+        }
+        return count;
+    }
+
+    private static int indexOf(Future<?>[] futures, Future<?> future) {
+        for (int i = 0; i < futures.length; i++) {
+            if (futures[i] == future) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Unknown decode task");
+    }
+
+    /**
+     * @return 图片识别中各二值化方式的尝试与成功次数
+     */
+    public static Map<String, Long> getBinarizerStatistics() {
+        return BINARIZER_STRATEGY.getStatistics();
+    }
+
+    /**
+     * Bounded pool shared by still image decoding and its parallel subtasks, sized to the available
+     * cores. Tasks in it must not wait for other scans that may need its threads.
+     */
+    static synchronized ThreadPoolExecutor getDecodeExecutor() {
+        if (decodeExecutor == null) {
+            decodeExecutor = newPool("QRCodeDecoder-");
+        }
+        return decodeExecutor;
+    }
+
+    /**
+     * Bounded pool for batch scans, whose items may wait for a scan of the same image running in
+     * {@link #getDecodeExecutor()}. Kept apart so those waits never hold the threads that scan
+     * needs, and single scans do not queue behind a batch.
+     */
+    static synchronized ThreadPoolExecutor getBatchExecutor() {
+        if (batchExecutor == null) {
+            batchExecutor = newPool("QRCodeBatch-");
+        }
+        return batchExecutor;
+    }
+
+    private static ThreadPoolExecutor newPool(final String namePrefix) {
+        int threads = Math.max(2,
+                Math.min(Runtime.getRuntime().availableProcessors(), MAX_DECODE_THREADS));
+        final AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static GrayscaleLuminanceSource getDecodeAbleLuminance(String picturePath, int rotation) {
+        return getDecodeAbleLuminance(picturePath, null, rotation);
+    }
+
+    /**
+     * 将本地图片文件或内存中的图片转换成可解码二维码的亮度数据。为了避免图片太大，这里对图片进行了压缩。感谢 https://github.com/devilsen 提的 PR
+     * <p>
+     * 图片按 RGB_565 解码，尽量复用当前线程上次解码的 Bitmap，再逐行转换为亮度并摆正，
+     * 整个过程只有一份亮度数据的拷贝。
      *
-     * @param picturePath 本地图片文件路径
-     * @return
+     * @param picturePath 本地图片文件路径，为 null 时解码 data
+     * @param data        内存中的图片文件内容
+     * @param rotation    摆正图片需要顺时针旋转的角度，或 {@link #ROTATION_FROM_EXIF}（仅对文件有效）
+     * @return 摆正后的亮度数据，无法解码时为 null
      */
-    private static Bitmap getDecodeAbleBitmap(String picturePath) {
+    private static GrayscaleLuminanceSource getDecodeAbleLuminance(String picturePath, byte[] data, int rotation) {
         try {
+            if (rotation == ROTATION_FROM_EXIF) {
+                rotation = picturePath != null ? getExifRotation(picturePath) : 0;
+            }
             BitmapFactory.Options options = new BitmapFactory.Options();
             options.inJustDecodeBounds = true;
-            BitmapFactory.decodeFile(picturePath, options);
+            decode(picturePath, data, options);
             int sampleSize = options.outWidth / 400;
             if (sampleSize <= 0) {
                 sampleSize = 1;
             }
             options.inSampleSize = sampleSize;
             options.inJustDecodeBounds = false;
-            Bitmap bitmap = BitmapFactory.decodeFile(picturePath, options);
-            Matrix matrix = new Matrix();
-            matrix.setRotate(90);
-            // 创建新的图片
-            Bitmap resizedBitmap = Bitmap.createBitmap(bitmap, 0, 0,
-                    bitmap.getWidth(), bitmap.getHeight(), matrix, true);
-            return resizedBitmap;
+            // 只需要亮度，RGB_565 的内存是 ARGB_8888 的一半
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+            options.inMutable = true;
+            Bitmap bitmap = decodeReusingBitmap(picturePath, data, options);
+            if (bitmap == null) {
+                return null;
+            }
+            GrayscaleLuminanceSource source = GrayscaleLuminanceSource.fromBitmap(bitmap, rotation);
+            THREAD_BITMAP.set(bitmap);
+            return source;
         } catch (Exception e) {
             return null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * @return 摆正图片需要顺时针旋转的角度。镜像的方向只取其中的旋转，镜像的码本来就无法识别
+     */
+    private static int getExifRotation(String picturePath) {
+        try {
+            ExifInterface exif = new ExifInterface(picturePath);
+            switch (exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL)) {
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                case ExifInterface.ORIENTATION_TRANSPOSE:
+                    return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                    return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                case ExifInterface.ORIENTATION_TRANSVERSE:
+                    return 270;
+                default:
+                    return 0;
+            }
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static Bitmap decode(String picturePath, byte[] data, BitmapFactory.Options options) {
+        return picturePath != null
+                ? BitmapFactory.decodeFile(picturePath, options)
+                : BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+
+    /**
+     * @param options 已按 inJustDecodeBounds 读取过图片尺寸的解码参数
+     */
+    private static Bitmap decodeReusingBitmap(String picturePath, byte[] data, BitmapFactory.Options options) {
+        Bitmap reusable = THREAD_BITMAP.get();
+        if (reusable != null && !reusable.isRecycled() && reusable.isMutable() && fits(reusable, options)) {
+            options.inBitmap = reusable;
+            Bitmap bitmap = null;
+            try {
+                bitmap = decode(picturePath, data, options);
+            } catch (IllegalArgumentException e) {
+                // decodeByteArray reports a bitmap that can not be reused by throwing
+            }
+            // decodeFile catches that exception itself and returns null instead
+            if (bitmap != null) {
+                return bitmap;
+            }
+            options.inBitmap = null;
+        }
+        if (reusable != null) {
+            THREAD_BITMAP.remove();
+            reusable.recycle();
+        }
+        return decode(picturePath, data, options);
+    }
+
+    /**
+     * Whether the image can be decoded into {@code reusable}. Before KitKat only a bitmap of the
+     * same size can be reused, without sampling. From KitKat on any bitmap with enough memory can.
+     */
+    private static boolean fits(Bitmap reusable, BitmapFactory.Options options) {
+        int sampleSize = Math.max(1, options.inSampleSize);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            return sampleSize == 1
+                    && reusable.getWidth() == options.outWidth && reusable.getHeight() == options.outHeight;
+        }
+        // The decoder may sample less than asked, JPEG only in powers of two, then the decode
+        // fails and decodeReusingBitmap falls back to a new bitmap
+        long width = (options.outWidth + sampleSize - 1) / sampleSize;
+        long height = (options.outHeight + sampleSize - 1) / sampleSize;
+        // RGB_565, two bytes per pixel. getByteCount() is at most the allocation, so this never
+        // reuses a bitmap that is too small
+        return reusable.getByteCount() >= width * height * 2;
+    }
+}
@@ -0,0 +1,209 @@
+package me.hetian.flutter_qr_reader.reader;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Picks the binarizer per image. {@link GlobalHistogramBinarizer} costs about half of
+ * {@link HybridBinarizer} but needs one threshold to fit the whole image, so it is only tried on
+ * evenly lit, high contrast images and {@link HybridBinarizer} remains the fallback.
+ * <p>
+ * A quick histogram over a sparse grid of samples decides: the image needs enough contrast, and
+ * every grid block containing edges must straddle the global threshold. A light gradient or a
+ * shadow over the code leaves some blocks entirely on one side of it.
+ * <p>
+ * Counters are thread safe, one instance can be shared by decoding threads.
+ */
+public final class BinarizerStrategy {
+
+    // Sample grid over the image, also split into BLOCKS x BLOCKS blocks
+    private static final int SAMPLE_ROWS = 32;
+    private static final int SAMPLE_COLUMNS = 64;
+    private static final int BLOCKS = 4;
+    // Minimum spread between the 5th and 95th percentile of the samples
+    private static final int MIN_CONTRAST = 64;
+
+    private volatile boolean globalFirst = true;
+    private final AtomicLong globalAttempts = new AtomicLong();
+    private final AtomicLong globalHits = new AtomicLong();
+    private final AtomicLong hybridAttempts = new AtomicLong();
+    private final AtomicLong hybridHits = new AtomicLong();
+
+    /**
+     * @param globalFirst false to always binarize with {@link HybridBinarizer}
+     */
+    public void setGlobalFirst(boolean globalFirst) {
+        this.globalFirst = globalFirst;
+    }
+
+    public boolean isGlobalFirst() {
+        return globalFirst;
+    }
+
+    /**
+     * Decode with the binarizer chosen for {@code source}, falling back to
+     * {@link HybridBinarizer} when the global threshold finds nothing.
+     *
+     * @throws NotFoundException when neither binarization decodes
+     */
+    public Result decode(MyMultiFormatReader reader, LuminanceSource source) throws NotFoundException {
+        return decode(reader, source, new BinarizerWorkspace());
+    }
+
+    /**
+     * {@link #decode(MyMultiFormatReader, LuminanceSource)} binarizing into the arrays of
+     * {@code workspace}, which the caller keeps between frames.
+     */
+    public Result decode(MyMultiFormatReader reader, LuminanceSource source, BinarizerWorkspace workspace)
+            throws NotFoundException {
+        if (globalFirst && isEvenlyLit(source, workspace)) {
+            globalAttempts.incrementAndGet();
+            try {
+                Result result = reader.decodeWithState(
+                        new BinaryBitmap(new ReusableGlobalHistogramBinarizer(source, workspace)));
+                globalHits.incrementAndGet();
+                return result;
+            } catch (NotFoundException e) {
+                // Fall back to the local thresholds
+            } finally {
+                reader.reset();
+            }
+        }
+        hybridAttempts.incrementAndGet();
+        Result result = reader.decodeWithState(new BinaryBitmap(new ReusableHybridBinarizer(source, workspace)));
+        hybridHits.incrementAndGet();
+        return result;
+    }
+
+    /**
+     * {@link #decode(MyMultiFormatReader, LuminanceSource)} for every code in the image.
+     */
+    public Result[] decodeMultiple(MyMultipleFormatReader reader, LuminanceSource source)
+            throws NotFoundException {
+        return decodeMultiple(reader, source, new BinarizerWorkspace());
+    }
+
+    /**
+     * {@link #decodeMultiple(MyMultipleFormatReader, LuminanceSource)} binarizing into the arrays
+     * of {@code workspace}. Unlike {@link #decode}, {@link HybridBinarizer} always runs as well:
+     * the global threshold finding some codes says nothing about the others, so the results of
+     * both binarizations are merged by format and text.
+     */
+    public Result[] decodeMultiple(MyMultipleFormatReader reader, LuminanceSource source,
+                                   BinarizerWorkspace workspace) throws NotFoundException {
+        Result[] globalResults = null;
+        if (globalFirst && isEvenlyLit(source, workspace)) {
+            globalAttempts.incrementAndGet();
+            try {
+                globalResults = reader.decodeMultiple(
+                        new BinaryBitmap(new ReusableGlobalHistogramBinarizer(source, workspace)));
+                globalHits.incrementAndGet();
+            } catch (NotFoundException e) {
+                // Only the local thresholds left
+            }
+        }
+        hybridAttempts.incrementAndGet();
+        Result[] hybridResults;
+        try {
+            hybridResults = reader.decodeMultiple(new BinaryBitmap(new ReusableHybridBinarizer(source, workspace)));
+        } catch (NotFoundException e) {
+            if (globalResults == null) {
+                throw e;
+            }
+            return globalResults;
+        }
+        hybridHits.incrementAndGet();
+        if (globalResults == null) {
+            return hybridResults;
+        }
+        Map<String, Result> merged = new LinkedHashMap<>();
+        for (Result[] results : new Result[][]{globalResults, hybridResults}) {
+            for (Result result : results) {
+                String key = result.getBarcodeFormat() + ":" + result.getText();
+                if (!merged.containsKey(key)) {
+                    merged.put(key, result);
+                }
+            }
+        }
+        return merged.values().toArray(new Result[0]);
+    }
+
+    /**
+     * @return attempts and hits per binarizer, hit rate is hits / attempts
+     */
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("globalAttempts", globalAttempts.get());
+        statistics.put("globalHits", globalHits.get());
+        statistics.put("hybridAttempts", hybridAttempts.get());
+        statistics.put("hybridHits", hybridHits.get());
+        return statistics;
+    }
+
+    /**
+     * @return whether one global threshold separates dark from light everywhere in the image
+     */
+    static boolean isEvenlyLit(LuminanceSource source, BinarizerWorkspace workspace) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        if (width < SAMPLE_COLUMNS || height < SAMPLE_ROWS) {
+            return false;
+        }
+
+        int[] histogram = workspace.sampleHistogram();
+        int[] blockMin = workspace.blockMin(BLOCKS * BLOCKS);
+        int[] blockMax = workspace.blockMax(BLOCKS * BLOCKS);
+        byte[] rowBuffer = workspace.luminances(width);
+        for (int r = 0; r < SAMPLE_ROWS; r++) {
+            int y = (2 * r + 1) * height / (2 * SAMPLE_ROWS);
+            byte[] row = source.getRow(y, rowBuffer);
+            int blockRow = r * BLOCKS / SAMPLE_ROWS * BLOCKS;
+            for (int c = 0; c < SAMPLE_COLUMNS; c++) {
+                int luminance = row[(2 * c + 1) * width / (2 * SAMPLE_COLUMNS)] & 0xff;
+                histogram[luminance]++;
+                int block = blockRow + c * BLOCKS / SAMPLE_COLUMNS;
+                blockMin[block] = Math.min(blockMin[block], luminance);
+                blockMax[block] = Math.max(blockMax[block], luminance);
+            }
+        }
+
+        int samples = SAMPLE_ROWS * SAMPLE_COLUMNS;
+        int dark = percentile(histogram, samples / 20);
+        int light = percentile(histogram, samples - samples / 20);
+        int contrast = light - dark;
+        if (contrast < MIN_CONTRAST) {
+            return false;
+        }
+        int threshold = (dark + light) / 2;
+        int margin = contrast / 8;
+        for (int i = 0; i < blockMin.length; i++) {
+            boolean hasEdges = blockMax[i] - blockMin[i] >= contrast / 2;
+            if (hasEdges && (blockMin[i] > threshold - margin || blockMax[i] < threshold + margin)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the luminance below which {@code rank} samples fall
+     */
+    private static int percentile(int[] histogram, int rank) {
+        int count = 0;
+        for (int luminance = 0; luminance < histogram.length; luminance++) {
+            count += histogram[luminance];
+            if (count > rank) {
+                return luminance;
+            }
+        }
+        return histogram.length - 1;
+    }
+}
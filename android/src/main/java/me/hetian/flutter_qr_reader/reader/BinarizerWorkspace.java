@@ -0,0 +1,102 @@
+package me.hetian.flutter_qr_reader.reader;
+
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * The arrays behind {@link ReusableGlobalHistogramBinarizer}, {@link ReusableHybridBinarizer} and
+ * the lighting check of {@link BinarizerStrategy}, kept between frames. While the frame size stays
+ * the same, binarizing a frame allocates nothing but the binarizer object itself.
+ * <p>
+ * Owned by one decoding thread. The black matrix is overwritten by the next binarization through
+ * the same workspace, so a workspace only serves one image at a time.
+ */
+public final class BinarizerWorkspace {
+
+    private static final int LUMINANCE_BUCKETS = 32;
+
+    private byte[] luminances = new byte[0];
+    private final int[] buckets = new int[LUMINANCE_BUCKETS];
+    private final int[] sampleHistogram = new int[256];
+    private int[] blockMin = new int[0];
+    private int[] blockMax = new int[0];
+    private int[][] blackPoints = new int[0][0];
+    private BitMatrix matrix;
+
+    /**
+     * @return a row buffer of at least {@code size} bytes
+     */
+    byte[] luminances(int size) {
+        if (luminances.length < size) {
+            luminances = new byte[size];
+        }
+        return luminances;
+    }
+
+    /**
+     * @return the histogram buckets, cleared
+     */
+    int[] buckets() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = 0;
+        }
+        return buckets;
+    }
+
+    /**
+     * @return a histogram over all 256 luminance values, cleared
+     */
+    int[] sampleHistogram() {
+        for (int i = 0; i < sampleHistogram.length; i++) {
+            sampleHistogram[i] = 0;
+        }
+        return sampleHistogram;
+    }
+
+    /**
+     * @return per-block minimum luminance, every entry set to 255
+     */
+    int[] blockMin(int blocks) {
+        if (blockMin.length != blocks) {
+            blockMin = new int[blocks];
+        }
+        for (int i = 0; i < blocks; i++) {
+            blockMin[i] = 255;
+        }
+        return blockMin;
+    }
+
+    /**
+     * @return per-block maximum luminance, cleared
+     */
+    int[] blockMax(int blocks) {
+        if (blockMax.length != blocks) {
+            blockMax = new int[blocks];
+        }
+        for (int i = 0; i < blocks; i++) {
+            blockMax[i] = 0;
+        }
+        return blockMax;
+    }
+
+    /**
+     * @return block black points of exactly {@code subHeight} rows of {@code subWidth}, not cleared
+     */
+    int[][] blackPoints(int subWidth, int subHeight) {
+        if (blackPoints.length != subHeight || subHeight > 0 && blackPoints[0].length != subWidth) {
+            blackPoints = new int[subHeight][subWidth];
+        }
+        return blackPoints;
+    }
+
+    /**
+     * @return an empty matrix of the given size
+     */
+    BitMatrix matrix(int width, int height) {
+        if (matrix == null || matrix.getWidth() != width || matrix.getHeight() != height) {
+            matrix = new BitMatrix(width, height);
+        } else {
+            matrix.clear();
+        }
+        return matrix;
+    }
+}
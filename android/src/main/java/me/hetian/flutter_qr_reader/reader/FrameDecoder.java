@@ -0,0 +1,260 @@
+package me.hetian.flutter_qr_reader.reader;
+
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+
+import java.util.Map;
+
+/**
+ * Decodes live preview frames: turns the (cropped) preview source upright when the frame is
+ * sideways, binarizes it through a
+ * {@link BinarizerStrategy} and runs the reader chain. One instance per decode thread, it keeps
+ * the configured readers and the matrix buffer between frames.
+ * <p>
+ * This is the whole pure-Java part of the live pipeline, so the host-side harness in
+ * {@code android/benchmark} measures exactly what the device runs.
+ */
+public final class FrameDecoder {
+
+    // Crops with a shorter side below this are decoded at full resolution only
+    private static final int MIN_PYRAMID_SIDE = 320;
+    // A code spanning less than this part of the crop's shorter side is too small to scale down
+    private static final float SMALL_CODE_FRACTION = 0.3f;
+    // Frames decoded at full resolution directly after a small code, while it is likely in view
+    private static final int FULL_RESOLUTION_FRAMES = 30;
+
+    private final MyMultiFormatReader reader = new MyMultiFormatReader();
+    // Not adaptive, skipping readers would hide the codes of the less frequent formats
+    private final MyMultipleFormatReader multipleReader = new MyMultipleFormatReader();
+    private final BinarizerStrategy binarizerStrategy = new BinarizerStrategy();
+    // Binarizer arrays reused while the frame size stays the same
+    private final BinarizerWorkspace workspace = new BinarizerWorkspace();
+    private Map<DecodeHintType, ?> hints;
+    private byte[] matrixBuffer;
+    private byte[] scaledBuffer;
+    private boolean pyramid;
+    private int fullResolutionFrames;
+    private long scaledHits;
+    private long fullResolutionHits;
+
+    /**
+     * Configure the readers. Cheap when called again with the same map, so it can be called for
+     * every frame with hints that are replaced rather than mutated.
+     */
+    public void setHints(Map<DecodeHintType, ?> hints) {
+        if (hints != this.hints) {
+            // Build the reader chain once per format set instead of once per frame
+            reader.setHints(hints);
+            multipleReader.setHints(hints);
+            this.hints = hints;
+        }
+    }
+
+    public void setAdaptive(boolean adaptive) {
+        if (reader.isAdaptive() != adaptive) {
+            reader.setAdaptive(adaptive);
+        }
+    }
+
+    /**
+     * Decode single codes at half resolution first and fall back to the full frame. A large code
+     * close to the camera is found for about a quarter of the work; small codes cost one extra
+     * scaled pass, and after one is found the next frames skip the scaled pass for a while.
+     * Only {@link #decode} uses it, {@link #decodeMultiple} always works at full resolution.
+     */
+    public void setPyramid(boolean pyramid) {
+        if (this.pyramid != pyramid) {
+            this.pyramid = pyramid;
+            fullResolutionFrames = 0;
+        }
+    }
+
+    /**
+     * @return codes found at half resolution since this decoder was created
+     */
+    public long getScaledHits() {
+        return scaledHits;
+    }
+
+    /**
+     * @return codes found at full resolution since this decoder was created
+     */
+    public long getFullResolutionHits() {
+        return fullResolutionHits;
+    }
+
+    /**
+     * @return the binarizer selection, for its settings and statistics
+     */
+    public BinarizerStrategy getBinarizerStrategy() {
+        return binarizerStrategy;
+    }
+
+    /**
+     * @return the single code reader, for its statistics
+     */
+    public MyMultiFormatReader getReader() {
+        return reader;
+    }
+
+    /**
+     * Like {@link #decode(MyPlanarYUVLuminanceSource, int)} for a frame of a camera mounted
+     * sideways, as most phone cameras are.
+     */
+    public Result decode(MyPlanarYUVLuminanceSource previewSource) {
+        return decode(previewSource, 90);
+    }
+
+    /**
+     * @param previewSource preview frame, cropped to the scan area if any
+     * @param rotation      clockwise rotation in degrees that turns the frame upright. Sideways
+     *                      frames are rotated first, so 1D codes upright in the scene run across
+     *                      the rows the readers scan
+     * @return the first code found, with points in rotated full-frame coordinates, or null
+     */
+    public Result decode(MyPlanarYUVLuminanceSource previewSource, int rotation) {
+        boolean rotated = isSideways(rotation);
+        boolean scalable = pyramid
+                && Math.min(previewSource.getWidth(), previewSource.getHeight()) >= MIN_PYRAMID_SIDE;
+        if (scalable && fullResolutionFrames > 0) {
+            fullResolutionFrames--;
+        } else if (scalable) {
+            int area = (previewSource.getWidth() / 2) * (previewSource.getHeight() / 2);
+            if (scaledBuffer == null || scaledBuffer.length < area) {
+                scaledBuffer = new byte[area];
+            }
+            Result result = decodeSource(previewSource.scaleDown(scaledBuffer), rotated);
+            if (result != null) {
+                scaledHits++;
+                scaleResultPoints(result, 2);
+                offsetResultPoints(result, previewSource, rotated);
+                return result;
+            }
+        }
+
+        Result result = decodeSource(previewSource, rotated);
+        if (result == null) {
+            return null;
+        }
+        fullResolutionHits++;
+        if (scalable && isSmall(result, previewSource)) {
+            fullResolutionFrames = FULL_RESOLUTION_FRAMES;
+        }
+        offsetResultPoints(result, previewSource, rotated);
+        return result;
+    }
+
+    private Result decodeSource(MyPlanarYUVLuminanceSource source, boolean rotated) {
+        try {
+            return binarizerStrategy.decode(reader, orient(source, rotated), workspace);
+        } catch (NotFoundException e) {
+            // No code in this frame
+            return null;
+        } finally {
+            reader.reset();
+        }
+    }
+
+    /**
+     * Like {@link #decodeMultiple(MyPlanarYUVLuminanceSource, int)} for a frame of a camera
+     * mounted sideways.
+     */
+    public Result[] decodeMultiple(MyPlanarYUVLuminanceSource previewSource) {
+        return decodeMultiple(previewSource, 90);
+    }
+
+    /**
+     * @param previewSource preview frame, cropped to the scan area if any
+     * @param rotation      clockwise rotation in degrees that turns the frame upright
+     * @return every distinct code found, with points in rotated full-frame coordinates, or null
+     */
+    public Result[] decodeMultiple(MyPlanarYUVLuminanceSource previewSource, int rotation) {
+        boolean rotated = isSideways(rotation);
+        try {
+            Result[] results = binarizerStrategy.decodeMultiple(multipleReader,
+                    orient(previewSource, rotated), workspace);
+            for (Result result : results) {
+                offsetResultPoints(result, previewSource, rotated);
+            }
+            return results;
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    private static boolean isSideways(int rotation) {
+        return rotation % 180 != 0;
+    }
+
+    // Frames that are upright or upside down are decoded as they are, the 2D readers find codes at any angle
+    private LuminanceSource orient(MyPlanarYUVLuminanceSource previewSource, boolean rotated) {
+        if (!rotated) {
+            return previewSource;
+        }
+        int area = previewSource.getWidth() * previewSource.getHeight();
+        if (matrixBuffer == null || matrixBuffer.length < area) {
+            matrixBuffer = new byte[area];
+        }
+        // Rotated by index arithmetic over the preview buffer, no per-frame copy
+        return previewSource.rotateCounterClockwise(matrixBuffer);
+    }
+
+    /**
+     * @return whether the code's points span less than {@link #SMALL_CODE_FRACTION} of the crop
+     */
+    private static boolean isSmall(Result result, MyPlanarYUVLuminanceSource crop) {
+        ResultPoint[] points = result.getResultPoints();
+        if (points == null) {
+            return false;
+        }
+        float span = 0;
+        for (int i = 0; i < points.length; i++) {
+            for (int j = i + 1; j < points.length; j++) {
+                if (points[i] != null && points[j] != null) {
+                    span = Math.max(span, ResultPoint.distance(points[i], points[j]));
+                }
+            }
+        }
+        return span < SMALL_CODE_FRACTION * Math.min(crop.getWidth(), crop.getHeight());
+    }
+
+    private static void scaleResultPoints(Result result, float scale) {
+        ResultPoint[] points = result.getResultPoints();
+        if (points == null) {
+            return;
+        }
+        for (int i = 0; i < points.length; i++) {
+            if (points[i] != null) {
+                points[i] = new ResultPoint(points[i].getX() * scale, points[i].getY() * scale);
+            }
+        }
+    }
+
+    /**
+     * Move result points from the crop back into rotated full-frame coordinates, which is what the
+     * view's point transformer expects. Rotated x runs along preview y and vice versa, so points of
+     * a crop decoded without rotating are swapped as well.
+     */
+    private static void offsetResultPoints(Result result, MyPlanarYUVLuminanceSource crop, boolean rotated) {
+        // getResultPoints() exposes the result's own array
+        ResultPoint[] points = result.getResultPoints();
+        if (points == null || (rotated && crop.getLeft() == 0 && crop.getTop() == 0)) {
+            return;
+        }
+        for (int i = 0; i < points.length; i++) {
+            if (points[i] == null) {
+                continue;
+            }
+            if (rotated) {
+                points[i] = new ResultPoint(points[i].getX() + crop.getTop(),
+                        points[i].getY() + crop.getLeft());
+            } else {
+                points[i] = new ResultPoint(points[i].getY() + crop.getTop(),
+                        points[i].getX() + crop.getLeft());
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package me.hetian.flutter_qr_reader.reader;
+
+/**
+ * Something that delivers luminance frames to decode: the camera preview on a device, or the
+ * ReplayFrameSource of {@code android/benchmark} replaying recorded frames so the
+ * {@link ScanPipeline} can run without camera hardware.
+ * <p>
+ * Frames are planar, the first {@code width * height} bytes of a buffer are the Y plane, as in an
+ * NV21 preview frame. Buffers are pooled: every frame handed to the callback must be given back
+ * through {@link #releaseFrame(byte[])} once nothing reads it any more.
+ */
+public interface FrameSource {
+
+    interface FrameCallback {
+
+        /**
+         * @param data        the frame, owned by the callback until it is released
+         * @param width       width of the Y plane
+         * @param height      height of the Y plane
+         * @param rotation    clockwise rotation in degrees that turns the frame upright
+         * @param timestampMs capture time in milliseconds, from a clock that only moves forward
+         */
+        void onFrame(byte[] data, int width, int height, int rotation, long timestampMs);
+    }
+
+    /**
+     * @param callback receives the frames, or null to stop delivering them
+     */
+    void setFrameCallback(FrameCallback callback);
+
+    /**
+     * Start delivering frames to the callback.
+     */
+    void start();
+
+    /**
+     * Stop delivering frames. Frames already handed out may still be released afterwards.
+     */
+    void stop();
+
+    /**
+     * Give a frame back to the source so its buffer can be filled again.
+     */
+    void releaseFrame(byte[] data);
+}
@@ -0,0 +1,180 @@
+package me.hetian.flutter_qr_reader.reader;
+
+import android.graphics.Bitmap;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * Luminance of a still image in a single {@code byte[]}, converted from a bitmap one row at a time
+ * so that no full size {@code int[]} copy of the pixels is made. Rotations are done on the
+ * luminance bytes, a quarter of the memory of rotating the bitmap.
+ */
+public final class GrayscaleLuminanceSource extends LuminanceSource {
+
+    private final byte[] luminances;
+    private final int dataWidth;
+    private final int dataHeight;
+    private final int left;
+    private final int top;
+
+    public GrayscaleLuminanceSource(byte[] luminances, int width, int height) {
+        this(luminances, width, height, 0, 0, width, height);
+    }
+
+    private GrayscaleLuminanceSource(byte[] luminances,
+                                     int dataWidth,
+                                     int dataHeight,
+                                     int left,
+                                     int top,
+                                     int width,
+                                     int height) {
+        super(width, height);
+        if (left + width > dataWidth || top + height > dataHeight) {
+            throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+        }
+        this.luminances = luminances;
+        this.dataWidth = dataWidth;
+        this.dataHeight = dataHeight;
+        this.left = left;
+        this.top = top;
+    }
+
+    /**
+     * Convert a bitmap, rotated on the way.
+     *
+     * @param rotation clockwise rotation in degrees, a multiple of 90
+     */
+    public static GrayscaleLuminanceSource fromBitmap(Bitmap bitmap, int rotation) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        rotation = (rotation % 360 + 360) % 360;
+        byte[] luminances = new byte[width * height];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            // Where pixel (x, y) lands and how far the next pixel of the row is from it
+            int offset;
+            int step;
+            switch (rotation) {
+                case 90:
+                    offset = height - 1 - y;
+                    step = height;
+                    break;
+                case 180:
+                    offset = (height - 1 - y) * width + width - 1;
+                    step = -1;
+                    break;
+                case 270:
+                    offset = (width - 1) * height + y;
+                    step = -height;
+                    break;
+                default:
+                    offset = y * width;
+                    step = 1;
+                    break;
+            }
+            for (int x = 0; x < width; x++, offset += step) {
+                int pixel = row[x];
+                int r = (pixel >> 16) & 0xff; // red
+                int g2 = (pixel >> 7) & 0x1fe; // 2 * green
+                int b = pixel & 0xff; // blue
+                // Calculate green-favouring average cheaply, as RGBLuminanceSource
+                luminances[offset] = (byte) ((r + g2 + b) / 4);
+            }
+        }
+        boolean swap = rotation == 90 || rotation == 270;
+        return new GrayscaleLuminanceSource(luminances, swap ? height : width, swap ? width : height);
+    }
+
+    @Override
+    public byte[] getRow(int y, byte[] row) {
+        if (y < 0 || y >= getHeight()) {
+            throw new IllegalArgumentException("Requested row is outside the image: " + y);
+        }
+        int width = getWidth();
+        if (row == null || row.length < width) {
+            row = new byte[width];
+        }
+        int offset = (y + top) * dataWidth + left;
+        System.arraycopy(luminances, offset, row, 0, width);
+        return row;
+    }
+
+    @Override
+    public byte[] getMatrix() {
+        int width = getWidth();
+        int height = getHeight();
+
+        // If the caller asks for the entire underlying image, save the copy and give them the
+        // original data. The docs specifically warn that result.length must be ignored.
+        if (width == dataWidth && height == dataHeight) {
+            return luminances;
+        }
+
+        int area = width * height;
+        byte[] matrix = new byte[area];
+        int inputOffset = top * dataWidth + left;
+
+        // If the width matches the full width of the underlying data, perform a single copy.
+        if (width == dataWidth) {
+            System.arraycopy(luminances, inputOffset, matrix, 0, area);
+            return matrix;
+        }
+
+        // Otherwise copy one cropped row at a time.
+        for (int y = 0; y < height; y++) {
+            int outputOffset = y * width;
+            System.arraycopy(luminances, inputOffset, matrix, outputOffset, width);
+            inputOffset += dataWidth;
+        }
+        return matrix;
+    }
+
+    @Override
+    public boolean isCropSupported() {
+        return true;
+    }
+
+    @Override
+    public LuminanceSource crop(int left, int top, int width, int height) {
+        return new GrayscaleLuminanceSource(luminances,
+                dataWidth,
+                dataHeight,
+                this.left + left,
+                this.top + top,
+                width,
+                height);
+    }
+
+    @Override
+    public boolean isRotateSupported() {
+        return true;
+    }
+
+    @Override
+    public LuminanceSource rotateCounterClockwise() {
+        return rotate(270);
+    }
+
+    /**
+     * @return a copy of this crop rotated 90 degrees clockwise
+     */
+    public GrayscaleLuminanceSource rotateClockwise() {
+        return rotate(90);
+    }
+
+    private GrayscaleLuminanceSource rotate(int rotation) {
+        int width = getWidth();
+        int height = getHeight();
+        byte[] rotated = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            int inputOffset = (y + top) * dataWidth + left;
+            int offset = rotation == 90 ? height - 1 - y : (width - 1) * height + y;
+            int step = rotation == 90 ? height : -height;
+            for (int x = 0; x < width; x++, offset += step) {
+                rotated[offset] = luminances[inputOffset + x];
+            }
+        }
+        return new GrayscaleLuminanceSource(rotated, height, width);
+    }
+}
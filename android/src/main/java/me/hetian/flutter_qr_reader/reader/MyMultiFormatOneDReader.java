@@ -27,6 +27,8 @@ import java.util.Map;
 
 public class MyMultiFormatOneDReader extends OneDReader {
     private final OneDReader[] readers;
+    private boolean adaptive;
+    private int lastHit;
 
     public MyMultiFormatOneDReader(Map<DecodeHintType, ?> hints) {
         @SuppressWarnings("unchecked")
@@ -81,9 +83,14 @@ public class MyMultiFormatOneDReader extends OneDReader {
     public Result decodeRow(int rowNumber,
                             BitArray row,
                             Map<DecodeHintType, ?> hints) throws NotFoundException {
-        for (OneDReader reader : readers) {
+        // In adaptive mode start with the reader that decoded last, then keep the usual order
+        int first = adaptive ? lastHit : 0;
+        for (int i = 0; i < readers.length; i++) {
+            int index = i == 0 ? first : (i <= first ? i - 1 : i);
             try {
-                return reader.decodeRow(rowNumber, row, hints);
+                Result result = readers[index].decodeRow(rowNumber, row, hints);
+                lastHit = index;
+                return result;
             } catch (ReaderException re) {
                 // continue
             }
@@ -92,6 +99,13 @@ public class MyMultiFormatOneDReader extends OneDReader {
         throw NotFoundException.getNotFoundInstance();
     }
 
+    /**
+     * @param adaptive try the sub-reader that decoded last first
+     */
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
     @Override
     public void reset() {
         for (Reader reader : readers) {
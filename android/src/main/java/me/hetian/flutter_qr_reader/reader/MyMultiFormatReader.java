@@ -19,13 +19,34 @@ import com.google.zxing.qrcode.QRCodeReader;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 
 public class MyMultiFormatReader implements Reader {
+    // Number of recent successful decodes the adaptive order is based on
+    private static final int HIT_WINDOW_SIZE = 64;
+    // Below this many hits in the window every reader is still tried
+    private static final int MIN_WINDOW_HITS = 8;
+    // In adaptive mode every n-th decode still tries readers without recent hits
+    private static final int FULL_PASS_INTERVAL = 10;
+
     private Map<DecodeHintType, ?> hints;
     private Reader[] readers;
     static private String TAG = "MyMultiFormatReader";
 
+    private boolean adaptive;
+    private Reader[] orderedReaders;
+    private int likelyReaderCount;
+    private boolean orderDirty = true;
+    private final BarcodeFormat[] hitWindow = new BarcodeFormat[HIT_WINDOW_SIZE];
+    private int hitWindowNext;
+    private int hitWindowSize;
+    private final int[] formatHits = new int[BarcodeFormat.values().length];
+    private long decodeCount;
+    private long fullPassCount;
+
     /**
      * This version of decode honors the intent of Reader.decode(BinaryBitmap) in that it
      * passes null as a hint to the decoders. However, that makes it inefficient to call repeatedly.
@@ -139,6 +160,77 @@ public class MyMultiFormatReader implements Reader {
             }
         }
         this.readers = readers.toArray(new Reader[readers.size()]);
+        for (Reader reader : this.readers) {
+            if (reader instanceof MyMultiFormatOneDReader) {
+                ((MyMultiFormatOneDReader) reader).setAdaptive(adaptive);
+            }
+        }
+        orderDirty = true;
+    }
+
+    /**
+     * Try the readers with the most hits among recent decodes first. Readers without recent hits
+     * are skipped, except on every {@value #FULL_PASS_INTERVAL}th decode or while too few decodes
+     * succeeded to tell. Off by default, which keeps the fixed order.
+     *
+     * @param adaptive adaptive ordering enabled/disabled
+     */
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+        if (readers != null) {
+            for (Reader reader : readers) {
+                if (reader instanceof MyMultiFormatOneDReader) {
+                    ((MyMultiFormatOneDReader) reader).setAdaptive(adaptive);
+                }
+            }
+        }
+        orderDirty = true;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * @return successful decodes per format among the last {@value #HIT_WINDOW_SIZE} hits
+     */
+    public synchronized Map<BarcodeFormat, Integer> getFormatHitCounts() {
+        Map<BarcodeFormat, Integer> counts = new EnumMap<>(BarcodeFormat.class);
+        for (BarcodeFormat format : BarcodeFormat.values()) {
+            if (formatHits[format.ordinal()] > 0) {
+                counts.put(format, formatHits[format.ordinal()]);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return simple class names of the readers in the order they are currently tried
+     */
+    public synchronized List<String> getReaderOrder() {
+        Reader[] order = adaptive && orderedReaders != null ? orderedReaders : readers;
+        if (order == null) {
+            return Collections.emptyList();
+        }
+        List<String> names = new ArrayList<>(order.length);
+        for (Reader reader : order) {
+            names.add(reader.getClass().getSimpleName());
+        }
+        return names;
+    }
+
+    /**
+     * @return number of decode attempts since creation
+     */
+    public synchronized long getDecodeCount() {
+        return decodeCount;
+    }
+
+    /**
+     * @return number of adaptive decode attempts that tried every reader
+     */
+    public synchronized long getFullPassCount() {
+        return fullPassCount;
     }
 
     @Override
@@ -152,9 +244,27 @@ public class MyMultiFormatReader implements Reader {
 
     private Result decodeInternal(BinaryBitmap image) throws NotFoundException {
         if (readers != null) {
-            for (Reader reader : readers) {
+            Reader[] order = readers;
+            int count = readers.length;
+            synchronized (this) {
+                decodeCount++;
+                if (adaptive) {
+                    if (orderDirty) {
+                        updateReaderOrder();
+                    }
+                    order = orderedReaders;
+                    if (hitWindowSize >= MIN_WINDOW_HITS && decodeCount % FULL_PASS_INTERVAL != 0) {
+                        count = likelyReaderCount;
+                    } else {
+                        fullPassCount++;
+                    }
+                }
+            }
+            for (int i = 0; i < count; i++) {
                 try {
-                    return reader.decode(image, hints);
+                    Result result = order[i].decode(image, hints);
+                    recordHit(result.getBarcodeFormat());
+                    return result;
                 } catch (ReaderException re) {
                 }
             }
@@ -162,6 +272,70 @@ public class MyMultiFormatReader implements Reader {
         throw NotFoundException.getNotFoundInstance();
     }
 
+    private synchronized void recordHit(BarcodeFormat format) {
+        if (hitWindowSize == HIT_WINDOW_SIZE) {
+            BarcodeFormat evicted = hitWindow[hitWindowNext];
+            formatHits[evicted.ordinal()]--;
+        } else {
+            hitWindowSize++;
+        }
+        hitWindow[hitWindowNext] = format;
+        hitWindowNext = (hitWindowNext + 1) % HIT_WINDOW_SIZE;
+        formatHits[format.ordinal()]++;
+        orderDirty = true;
+    }
+
+    /**
+     * Stable sort of the readers by recent hits of the formats they decode, so ties keep the
+     * configured order.
+     */
+    private void updateReaderOrder() {
+        Reader[] order = readers.clone();
+        int[] scores = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            scores[i] = hitsFor(order[i]);
+        }
+        // Insertion sort, there are at most six readers
+        for (int i = 1; i < order.length; i++) {
+            Reader reader = order[i];
+            int score = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < score) {
+                order[j + 1] = order[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            order[j + 1] = reader;
+            scores[j + 1] = score;
+        }
+        int likely = 0;
+        while (likely < scores.length && scores[likely] > 0) {
+            likely++;
+        }
+        orderedReaders = order;
+        likelyReaderCount = likely;
+        orderDirty = false;
+    }
+
+    private int hitsFor(Reader reader) {
+        if (reader instanceof QRCodeReader) {
+            return formatHits[BarcodeFormat.QR_CODE.ordinal()];
+        } else if (reader instanceof DataMatrixReader) {
+            return formatHits[BarcodeFormat.DATA_MATRIX.ordinal()];
+        } else if (reader instanceof AztecReader) {
+            return formatHits[BarcodeFormat.AZTEC.ordinal()];
+        } else if (reader instanceof PDF417Reader) {
+            return formatHits[BarcodeFormat.PDF_417.ordinal()];
+        } else if (reader instanceof MaxiCodeReader) {
+            return formatHits[BarcodeFormat.MAXICODE.ordinal()];
+        }
+        int hits = 0;
+        for (BarcodeFormat format : DecodeFormatManager.ONE_D_FORMATS) {
+            hits += formatHits[format.ordinal()];
+        }
+        return hits;
+    }
+
 //    private BinaryBitmap getBinaryBitmap(Bitmap image) {
 //
 //    }
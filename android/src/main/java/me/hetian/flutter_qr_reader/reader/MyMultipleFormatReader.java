@@ -0,0 +1,114 @@
+package me.hetian.flutter_qr_reader.reader;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Reader;
+import com.google.zxing.Result;
+import com.google.zxing.multi.GenericMultipleBarcodeReader;
+import com.google.zxing.multi.MultipleBarcodeReader;
+import com.google.zxing.multi.qrcode.QRCodeMultiReader;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Finds every distinct barcode in an image.
+ * <p>
+ * QR codes are located together by {@link QRCodeMultiReader}. All enabled formats are also
+ * searched by {@link GenericMultipleBarcodeReader}, which splits the image around each hit and
+ * decodes the parts again with a {@link MyMultiFormatReader} configured once through
+ * {@link #setHints(Map)}. Results are unique by format and text.
+ */
+public class MyMultipleFormatReader implements MultipleBarcodeReader {
+
+    private static final Result[] EMPTY_RESULT_ARRAY = new Result[0];
+
+    private final MyMultiFormatReader reader = new MyMultiFormatReader();
+    private final QRCodeMultiReader qrCodeReader = new QRCodeMultiReader();
+    private final GenericMultipleBarcodeReader genericReader;
+    private Map<DecodeHintType, ?> hints;
+    private boolean tryQrCode = true;
+
+    public MyMultipleFormatReader() {
+        // Decode the split regions with the cached reader chain instead of rebuilding it
+        genericReader = new GenericMultipleBarcodeReader(new Reader() {
+            @Override
+            public Result decode(BinaryBitmap image) throws NotFoundException {
+                return reader.decodeWithState(image);
+            }
+
+            @Override
+            public Result decode(BinaryBitmap image, Map<DecodeHintType, ?> hints)
+                    throws NotFoundException {
+                return reader.decodeWithState(image);
+            }
+
+            @Override
+            public void reset() {
+                reader.reset();
+            }
+        });
+    }
+
+    /**
+     * Configure the readers once for subsequent calls to {@link #decodeMultiple(BinaryBitmap)}.
+     *
+     * @param hints The set of hints to use
+     */
+    public void setHints(Map<DecodeHintType, ?> hints) {
+        this.hints = hints;
+        reader.setHints(hints);
+        @SuppressWarnings("unchecked")
+        Collection<BarcodeFormat> formats = hints == null ? null
+                : (Collection<BarcodeFormat>) hints.get(DecodeHintType.POSSIBLE_FORMATS);
+        tryQrCode = formats == null || formats.contains(BarcodeFormat.QR_CODE);
+    }
+
+    /**
+     * @return the reader chain used for the regions, e.g. to change its adaptive ordering
+     */
+    public MyMultiFormatReader getReader() {
+        return reader;
+    }
+
+    @Override
+    public Result[] decodeMultiple(BinaryBitmap image) throws NotFoundException {
+        return decodeMultiple(image, hints);
+    }
+
+    @Override
+    public Result[] decodeMultiple(BinaryBitmap image, Map<DecodeHintType, ?> hints)
+            throws NotFoundException {
+        Map<String, Result> distinct = new LinkedHashMap<>();
+        if (tryQrCode) {
+            try {
+                addAll(distinct, qrCodeReader.decodeMultiple(image, hints));
+            } catch (NotFoundException e) {
+                // No QR code, the generic search may still find other formats
+            }
+        }
+        try {
+            addAll(distinct, genericReader.decodeMultiple(image, hints));
+        } catch (NotFoundException e) {
+            // Nothing more
+        } finally {
+            reader.reset();
+        }
+        if (distinct.isEmpty()) {
+            throw NotFoundException.getNotFoundInstance();
+        }
+        return distinct.values().toArray(EMPTY_RESULT_ARRAY);
+    }
+
+    private static void addAll(Map<String, Result> distinct, Result[] results) {
+        for (Result result : results) {
+            String key = result.getBarcodeFormat() + ":" + result.getText();
+            if (!distinct.containsKey(key)) {
+                distinct.put(key, result);
+            }
+        }
+    }
+}
@@ -13,6 +13,7 @@ import java.nio.ByteBuffer;
 public final class MyPlanarYUVLuminanceSource extends LuminanceSource {
 
     private static final int THUMBNAIL_SCALE_FACTOR = 2;
+    private static final int SHARPNESS_SAMPLES = 64;
 
     private final byte[] yuvData;
     private final int dataWidth;
@@ -137,6 +138,75 @@ public final class MyPlanarYUVLuminanceSource extends LuminanceSource {
         return getHeight() / THUMBNAIL_SCALE_FACTOR;
     }
 
+    /**
+     * Cheap focus measure: mean squared difference between neighbouring 2x2 block averages, over
+     * a sparse grid of {@value #SHARPNESS_SAMPLES} x {@value #SHARPNESS_SAMPLES} points of the
+     * crop. Blur from focusing or motion flattens these differences, while averaging keeps sensor
+     * noise from dominating them. The score only means something relative to other frames of the
+     * same scene.
+     *
+     * @return the sharpness score, 0 for a crop too small to sample
+     */
+    public float sharpness() {
+        int width = getWidth();
+        int height = getHeight();
+        if (width < 4 || height < 4) {
+            return 0;
+        }
+        byte[] yuv = yuvData;
+        int stride = dataWidth;
+        int columns = Math.min(SHARPNESS_SAMPLES, width - 3);
+        int rows = Math.min(SHARPNESS_SAMPLES, height - 3);
+        long energy = 0;
+        for (int r = 0; r < rows; r++) {
+            int rowOffset = (top + r * (height - 3) / rows) * stride + left;
+            for (int c = 0; c < columns; c++) {
+                int offset = rowOffset + c * (width - 3) / columns;
+                int block = blockSum(yuv, offset, stride);
+                int dx = blockSum(yuv, offset + 2, stride) - block;
+                int dy = blockSum(yuv, offset + 2 * stride, stride) - block;
+                energy += dx * dx + dy * dy;
+            }
+        }
+        // Sums of four pixels, scale back to squared luminance differences
+        return energy / 16f / (rows * columns);
+    }
+
+    private static int blockSum(byte[] yuv, int offset, int stride) {
+        return (yuv[offset] & 0xff) + (yuv[offset + 1] & 0xff)
+                + (yuv[offset + stride] & 0xff) + (yuv[offset + stride + 1] & 0xff);
+    }
+
+    /**
+     * Half resolution copy of this crop, each pixel the average of a 2x2 block so that edges stay
+     * clean for the binarizer.
+     *
+     * @param scratch buffer reused between frames, replaced when smaller than a quarter of the crop
+     * @return a source over the scaled pixels, backed by {@code scratch} when it was large enough
+     */
+    public MyPlanarYUVLuminanceSource scaleDown(byte[] scratch) {
+        int width = getWidth() / 2;
+        int height = getHeight() / 2;
+        byte[] scaled = scratch != null && scratch.length >= width * height ? scratch : new byte[width * height];
+        byte[] yuv = yuvData;
+        int inputOffset = top * dataWidth + left;
+
+        for (int y = 0; y < height; y++) {
+            int outputOffset = y * width;
+            int upper = inputOffset;
+            int lower = inputOffset + dataWidth;
+            for (int x = 0; x < width; x++) {
+                int sum = (yuv[upper] & 0xff) + (yuv[upper + 1] & 0xff)
+                        + (yuv[lower] & 0xff) + (yuv[lower + 1] & 0xff);
+                scaled[outputOffset + x] = (byte) ((sum + 2) >> 2);
+                upper += 2;
+                lower += 2;
+            }
+            inputOffset += dataWidth * 2;
+        }
+        return new MyPlanarYUVLuminanceSource(scaled, width, height, 0, 0, width, height, false);
+    }
+
     private void reverseHorizontal(int width, int height) {
         byte[] yuvData = this.yuvData;
         for (int y = 0, rowStart = top * dataWidth + left; y < height; y++, rowStart += dataWidth) {
@@ -149,23 +219,56 @@ public final class MyPlanarYUVLuminanceSource extends LuminanceSource {
         }
     }
 
+    /**
+     * @return the preview buffer the crop reads from
+     */
+    public byte[] getYuvData() {
+        return yuvData;
+    }
+
+    /**
+     * @return left of the crop in the preview buffer
+     */
+    public int getLeft() {
+        return left;
+    }
+
+    /**
+     * @return top of the crop in the preview buffer
+     */
+    public int getTop() {
+        return top;
+    }
+
+    @Override
+    public boolean isRotateSupported() {
+        return true;
+    }
+
+    /**
+     * Rotates the crop by 90 degrees counter clockwise, mirrored horizontally, without copying
+     * the preview buffer.
+     *
+     * @see MyRotatedYUVLuminanceSource
+     */
+    @Override
     public LuminanceSource rotateCounterClockwise() {
-        byte[] rotatedData = new byte[yuvData.length];
-        for (int y = 0; y < dataHeight; y++) {
-            for (int x = 0; x < dataWidth; x++)
-                rotatedData[x * dataHeight + dataHeight - y - 1] = yuvData[x + y * dataWidth];
-        }
-        int tmp = dataWidth; // Here we are swapping, that's the difference to #11
-        int width = dataHeight;
-        int height = tmp;
-        return new MyPlanarYUVLuminanceSource(rotatedData,
-                width,
-                height,
-                0,
-                0,
-                width,
-                height,
-                true);
+        return rotateCounterClockwise(null);
+    }
+
+    /**
+     * Like {@link #rotateCounterClockwise()}, with a buffer the rotated source may reuse for
+     * {@link LuminanceSource#getMatrix()}, so continuous scanning does not allocate it per frame.
+     */
+    public MyRotatedYUVLuminanceSource rotateCounterClockwise(byte[] matrixBuffer) {
+        return new MyRotatedYUVLuminanceSource(yuvData,
+                dataWidth,
+                dataHeight,
+                left,
+                top,
+                getHeight(),
+                getWidth(),
+                matrixBuffer);
     }
 
 }
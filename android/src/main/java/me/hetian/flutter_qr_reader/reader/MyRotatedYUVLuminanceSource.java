@@ -0,0 +1,117 @@
+package me.hetian.flutter_qr_reader.reader;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * The rotated view of a {@link MyPlanarYUVLuminanceSource} crop, served straight from the
+ * original preview buffer.
+ * <p>
+ * It matches what {@link MyPlanarYUVLuminanceSource#rotateCounterClockwise()} used to build with a
+ * full copy followed by a horizontal flip: pixel (x, y) here is pixel (y, x) of the crop. Rows
+ * are gathered with index arithmetic and {@link #getMatrix()} does a tiled transpose, optionally
+ * into a caller-owned buffer that is reused across frames.
+ */
+public final class MyRotatedYUVLuminanceSource extends LuminanceSource {
+
+    // 32x32 bytes keeps both the read and the write side of a tile in L1
+    private static final int TILE_SIZE = 32;
+
+    private final byte[] yuvData;
+    private final int dataWidth;
+    private final int dataHeight;
+    private final int left;
+    private final int top;
+    private final byte[] matrixBuffer;
+
+    /**
+     * @param yuvData      preview buffer, Y plane first
+     * @param dataWidth    width of the preview buffer
+     * @param dataHeight   height of the preview buffer
+     * @param left         left of the crop in preview coordinates
+     * @param top          top of the crop in preview coordinates
+     * @param width        rotated width, which is the crop height
+     * @param height       rotated height, which is the crop width
+     * @param matrixBuffer buffer {@link #getMatrix()} may fill, or null to allocate
+     */
+    public MyRotatedYUVLuminanceSource(byte[] yuvData,
+                                       int dataWidth,
+                                       int dataHeight,
+                                       int left,
+                                       int top,
+                                       int width,
+                                       int height,
+                                       byte[] matrixBuffer) {
+        super(width, height);
+
+        if (left + height > dataWidth || top + width > dataHeight) {
+            throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+        }
+
+        this.yuvData = yuvData;
+        this.dataWidth = dataWidth;
+        this.dataHeight = dataHeight;
+        this.left = left;
+        this.top = top;
+        this.matrixBuffer = matrixBuffer;
+    }
+
+    @Override
+    public byte[] getRow(int y, byte[] row) {
+        if (y < 0 || y >= getHeight()) {
+            throw new IllegalArgumentException("Requested row is outside the image: " + y);
+        }
+        int width = getWidth();
+        if (row == null || row.length < width) {
+            row = new byte[width];
+        }
+        // A rotated row is a column of the crop
+        int offset = top * dataWidth + left + y;
+        for (int x = 0; x < width; x++, offset += dataWidth) {
+            row[x] = yuvData[offset];
+        }
+        return row;
+    }
+
+    @Override
+    public byte[] getMatrix() {
+        int width = getWidth();
+        int height = getHeight();
+        int area = width * height;
+        byte[] matrix = matrixBuffer != null && matrixBuffer.length >= area
+                ? matrixBuffer : new byte[area];
+
+        byte[] yuv = yuvData;
+        for (int y0 = 0; y0 < height; y0 += TILE_SIZE) {
+            int y1 = Math.min(y0 + TILE_SIZE, height);
+            for (int x0 = 0; x0 < width; x0 += TILE_SIZE) {
+                int x1 = Math.min(x0 + TILE_SIZE, width);
+                for (int x = x0; x < x1; x++) {
+                    // Sequential reads along one crop row, writes down one matrix column
+                    int inputOffset = (top + x) * dataWidth + left;
+                    for (int y = y0; y < y1; y++) {
+                        matrix[y * width + x] = yuv[inputOffset + y];
+                    }
+                }
+            }
+        }
+        return matrix;
+    }
+
+    @Override
+    public boolean isCropSupported() {
+        return true;
+    }
+
+    @Override
+    public LuminanceSource crop(int left, int top, int width, int height) {
+        // Rotated columns are crop rows and rotated rows are crop columns
+        return new MyRotatedYUVLuminanceSource(yuvData,
+                dataWidth,
+                dataHeight,
+                this.left + top,
+                this.top + left,
+                width,
+                height,
+                null);
+    }
+}
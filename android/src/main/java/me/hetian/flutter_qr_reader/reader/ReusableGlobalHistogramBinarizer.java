@@ -0,0 +1,163 @@
+package me.hetian.flutter_qr_reader.reader;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+
+/**
+ * {@link GlobalHistogramBinarizer} with its row buffer, histogram and black matrix taken from a
+ * {@link BinarizerWorkspace} instead of being allocated for every frame.
+ * <p>
+ * Binarizers created through {@link #createBinarizer} for rotated or cropped images get a
+ * workspace of their own, so they never overwrite the matrix handed out by this one.
+ */
+public class ReusableGlobalHistogramBinarizer extends Binarizer {
+
+    private static final int LUMINANCE_BITS = 5;
+    private static final int LUMINANCE_SHIFT = 8 - LUMINANCE_BITS;
+
+    final BinarizerWorkspace workspace;
+
+    public ReusableGlobalHistogramBinarizer(LuminanceSource source, BinarizerWorkspace workspace) {
+        super(source);
+        this.workspace = workspace;
+    }
+
+    // Applies simple sharpening to the row data to improve performance of the 1D Readers.
+    @Override
+    public BitArray getBlackRow(int y, BitArray row) throws NotFoundException {
+        LuminanceSource source = getLuminanceSource();
+        int width = source.getWidth();
+        if (row == null || row.getSize() < width) {
+            row = new BitArray(width);
+        } else {
+            row.clear();
+        }
+
+        byte[] localLuminances = source.getRow(y, workspace.luminances(width));
+        int[] localBuckets = workspace.buckets();
+        for (int x = 0; x < width; x++) {
+            localBuckets[(localLuminances[x] & 0xff) >> LUMINANCE_SHIFT]++;
+        }
+        int blackPoint = estimateBlackPoint(localBuckets);
+
+        if (width < 3) {
+            // Special case for very small images
+            for (int x = 0; x < width; x++) {
+                if ((localLuminances[x] & 0xff) < blackPoint) {
+                    row.set(x);
+                }
+            }
+        } else {
+            int left = localLuminances[0] & 0xff;
+            int center = localLuminances[1] & 0xff;
+            for (int x = 1; x < width - 1; x++) {
+                int right = localLuminances[x + 1] & 0xff;
+                // A simple -1 4 -1 box filter with a weight of 2.
+                if (((center * 4) - left - right) / 2 < blackPoint) {
+                    row.set(x);
+                }
+                left = center;
+                center = right;
+            }
+        }
+        return row;
+    }
+
+    // Does not sharpen the data, as this call is intended to only be used by 2D Readers.
+    @Override
+    public BitMatrix getBlackMatrix() throws NotFoundException {
+        LuminanceSource source = getLuminanceSource();
+        int width = source.getWidth();
+        int height = source.getHeight();
+
+        // Histogram of four sampled rows, the whole image is only read once it has a black point
+        int[] localBuckets = workspace.buckets();
+        byte[] rowBuffer = workspace.luminances(width);
+        for (int y = 1; y < 5; y++) {
+            byte[] localLuminances = source.getRow(height * y / 5, rowBuffer);
+            int right = (width * 4) / 5;
+            for (int x = width / 5; x < right; x++) {
+                localBuckets[(localLuminances[x] & 0xff) >> LUMINANCE_SHIFT]++;
+            }
+        }
+        int blackPoint = estimateBlackPoint(localBuckets);
+
+        BitMatrix matrix = workspace.matrix(width, height);
+        byte[] localLuminances = source.getMatrix();
+        for (int y = 0; y < height; y++) {
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                if ((localLuminances[offset + x] & 0xff) < blackPoint) {
+                    matrix.set(x, y);
+                }
+            }
+        }
+        return matrix;
+    }
+
+    @Override
+    public Binarizer createBinarizer(LuminanceSource source) {
+        return new ReusableGlobalHistogramBinarizer(source, new BinarizerWorkspace());
+    }
+
+    private static int estimateBlackPoint(int[] buckets) throws NotFoundException {
+        // Find the tallest peak in the histogram.
+        int numBuckets = buckets.length;
+        int maxBucketCount = 0;
+        int firstPeak = 0;
+        int firstPeakSize = 0;
+        for (int x = 0; x < numBuckets; x++) {
+            if (buckets[x] > firstPeakSize) {
+                firstPeak = x;
+                firstPeakSize = buckets[x];
+            }
+            if (buckets[x] > maxBucketCount) {
+                maxBucketCount = buckets[x];
+            }
+        }
+
+        // Find the second-tallest peak which is somewhat far from the tallest peak.
+        int secondPeak = 0;
+        int secondPeakScore = 0;
+        for (int x = 0; x < numBuckets; x++) {
+            int distanceToBiggest = x - firstPeak;
+            // Encourage more distant second peaks by multiplying by square of distance.
+            int score = buckets[x] * distanceToBiggest * distanceToBiggest;
+            if (score > secondPeakScore) {
+                secondPeak = x;
+                secondPeakScore = score;
+            }
+        }
+
+        // Make sure firstPeak corresponds to the black peak.
+        if (firstPeak > secondPeak) {
+            int temp = firstPeak;
+            firstPeak = secondPeak;
+            secondPeak = temp;
+        }
+
+        // If there is too little contrast in the image to pick a meaningful black point, throw rather
+        // than waste time trying to decode the image, and risk false positives.
+        if (secondPeak - firstPeak <= numBuckets / 16) {
+            throw NotFoundException.getNotFoundInstance();
+        }
+
+        // Find a valley between them that is low and closer to the white peak.
+        int bestValley = secondPeak - 1;
+        int bestValleyScore = -1;
+        for (int x = secondPeak - 1; x > firstPeak; x--) {
+            int fromFirst = x - firstPeak;
+            int score = fromFirst * fromFirst * (secondPeak - x) * (maxBucketCount - buckets[x]);
+            if (score > bestValleyScore) {
+                bestValley = x;
+                bestValleyScore = score;
+            }
+        }
+
+        return bestValley << LUMINANCE_SHIFT;
+    }
+}
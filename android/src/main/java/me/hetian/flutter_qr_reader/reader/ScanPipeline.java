@@ -0,0 +1,206 @@
+package me.hetian.flutter_qr_reader.reader;
+
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.Result;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * The live scan pipeline between a {@link FrameSource} and the code listener, free of Android
+ * runtime dependencies so the replay tool in {@code android/benchmark} runs exactly what the view
+ * runs on a device.
+ * <p>
+ * Frames are handed over through a single slot to the thread running {@link #run()}: a frame
+ * offered while that thread is busy replaces the one already waiting, so it always picks up the
+ * latest frame. Each frame is decoded at its own size and rotation by a {@link FrameDecoder} owned
+ * by the pipeline. Decoded frames go back to the source and their results to the listener on the
+ * result executor; dropped frames go back on the thread that offered the replacing frame.
+ */
+public final class ScanPipeline implements Runnable, FrameSource.FrameCallback {
+
+    public interface Listener {
+
+        /**
+         * Called on the result executor once a frame has been decoded, successfully or not, after
+         * its buffer went back to the source.
+         *
+         * @param results         every code found in the frame, or null
+         * @param decodeTimeNanos time spent decoding the frame
+         */
+        void onFrameDecoded(Result[] results, long decodeTimeNanos);
+
+        /**
+         * Called on the offering thread for a frame that was replaced or discarded before
+         * decoding, after its buffer went back to the source.
+         */
+        void onFrameDropped();
+    }
+
+    private final FrameSource source;
+    private final Executor resultExecutor;
+    private final Listener listener;
+    private final FrameDecoder decoder = new FrameDecoder();
+    private final Object lock = new Object();
+    private MyPlanarYUVLuminanceSource pendingFrame;
+    private int pendingRotation;
+    private boolean quit;
+    // Replaced, never mutated, so the decoder can compare it by identity
+    private volatile Map<DecodeHintType, ?> hints;
+    private volatile boolean adaptive;
+    private volatile boolean pyramid;
+    private volatile boolean multiple;
+
+    /**
+     * @param source         where frames are released to
+     * @param resultExecutor runs the listener, the main thread executor in the view
+     * @param listener       receives the results and drops
+     */
+    public ScanPipeline(FrameSource source, Executor resultExecutor, Listener listener) {
+        this.source = source;
+        this.resultExecutor = resultExecutor;
+        this.listener = listener;
+    }
+
+    /**
+     * @see FrameDecoder#setHints(Map)
+     */
+    public void setHints(Map<DecodeHintType, ?> hints) {
+        this.hints = hints;
+    }
+
+    /**
+     * @see FrameDecoder#setAdaptive(boolean)
+     */
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * @see FrameDecoder#setPyramid(boolean)
+     */
+    public void setPyramid(boolean pyramid) {
+        this.pyramid = pyramid;
+    }
+
+    /**
+     * @param multiple look for every code in a frame instead of stopping at the first one
+     */
+    public void setMultiple(boolean multiple) {
+        this.multiple = multiple;
+    }
+
+    /**
+     * @return the decoder of this pipeline, for its statistics. Its settings belong to the
+     * decoding thread, change them through the pipeline
+     */
+    public FrameDecoder getDecoder() {
+        return decoder;
+    }
+
+    /**
+     * Offer the whole frame, for sources whose frames need no filtering or crop.
+     */
+    @Override
+    public void onFrame(byte[] data, int width, int height, int rotation, long timestampMs) {
+        offer(new MyPlanarYUVLuminanceSource(data, width, height, 0, 0, width, height, false), rotation);
+    }
+
+    /**
+     * Hand a frame to the decoding thread, replacing any frame still waiting.
+     *
+     * @param frame    a frame of the source, cropped to the scan area if any
+     * @param rotation clockwise rotation in degrees that turns the frame upright
+     */
+    public void offer(MyPlanarYUVLuminanceSource frame, int rotation) {
+        MyPlanarYUVLuminanceSource dropped;
+        synchronized (lock) {
+            if (quit) {
+                dropped = frame;
+            } else {
+                dropped = pendingFrame;
+                pendingFrame = frame;
+                pendingRotation = rotation;
+                lock.notify();
+            }
+        }
+        if (dropped != null) {
+            drop(dropped);
+        }
+    }
+
+    /**
+     * Stop the decoding thread after the frame in progress. The waiting frame is dropped.
+     */
+    public void quit() {
+        MyPlanarYUVLuminanceSource dropped;
+        synchronized (lock) {
+            quit = true;
+            dropped = pendingFrame;
+            pendingFrame = null;
+            lock.notify();
+        }
+        if (dropped != null) {
+            drop(dropped);
+        }
+    }
+
+    /**
+     * Decode frames until {@link #quit()}. Runs on the thread that owns the decoder.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            final MyPlanarYUVLuminanceSource frame;
+            int rotation;
+            synchronized (lock) {
+                while (!quit && pendingFrame == null) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (quit) {
+                    return;
+                }
+                frame = pendingFrame;
+                rotation = pendingRotation;
+                pendingFrame = null;
+            }
+
+            long start = System.nanoTime();
+            final Result[] results = decode(frame, rotation);
+            final long decodeTimeNanos = System.nanoTime() - start;
+            resultExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // Give the buffer back to the source once decoding no longer reads it
+                    source.releaseFrame(frame.getYuvData());
+                    listener.onFrameDecoded(results, decodeTimeNanos);
+                }
+            });
+        }
+    }
+
+    private Result[] decode(MyPlanarYUVLuminanceSource frame, int rotation) {
+        decoder.setHints(hints);
+        decoder.setAdaptive(adaptive);
+        decoder.setPyramid(pyramid);
+        try {
+            if (multiple) {
+                return decoder.decodeMultiple(frame, rotation);
+            }
+            Result result = decoder.decode(frame, rotation);
+            return result == null ? null : new Result[]{result};
+        } catch (RuntimeException e) {
+            // A reader bug on one frame must not end scanning
+            return null;
+        }
+    }
+
+    private void drop(MyPlanarYUVLuminanceSource frame) {
+        source.releaseFrame(frame.getYuvData());
+        listener.onFrameDropped();
+    }
+}
@@ -0,0 +1,234 @@
+package me.hetian.flutter_qr_reader.reader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * LRU cache of still image scan results, kept in memory and in a small file so rescanning the same
+ * gallery images skips the bitmap decode and the reader chain, also after a restart. Images
+ * without a code are cached as well, as they are the most expensive to scan.
+ * <p>
+ * An entry is keyed by the path, size and modification time of the image and the rotation it was
+ * scanned with, so a file that changes gets a new entry and the stale one ages out. Concurrent
+ * requests for the same key run the scan once, the others wait for its result.
+ */
+public final class ScanResultCache {
+
+    // Version 1 files may hold misses cached for images that failed to decode
+    private static final int FILE_VERSION = 2;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // Far above what any code holds, a larger length means a damaged file
+    private static final int MAX_TEXT_BYTES = 1 << 20;
+
+    private final File file;
+    // Held around writing the file, taken before the monitor of the cache, never after it
+    private final Object fileLock = new Object();
+    // Access ordered, the eldest entry is the least recently used. A null value is a cached miss.
+    private final LinkedHashMap<String, String> entries;
+    private final Map<String, FutureTask<String>> inFlight = new HashMap<>();
+    private boolean loaded;
+    private boolean dirty;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param file       where entries are persisted, usually in the app cache dir
+     * @param maxEntries entries kept, the least recently used are evicted first
+     */
+    public ScanResultCache(File file, final int maxEntries) {
+        this.file = file;
+        this.entries = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param rotation the rotation the image is scanned with, part of the key
+     * @return the key of the image in its current state
+     */
+    public static String keyOf(File image, int rotation) {
+        return image.getAbsolutePath() + '|' + image.length() + '|' + image.lastModified() + '|' + rotation;
+    }
+
+    /**
+     * Return the cached result of a key, or run the scan and cache its result. Only one scan runs
+     * per key at a time.
+     *
+     * @param scan returns the text of the code, or null when the image holds none. It must throw
+     *             when the image could not be scanned, such as an unreadable file, so that the
+     *             failure is not cached as a miss
+     * @return the text of the code, or null when there is none
+     * @throws ExecutionException with what the scan threw, also for requests that waited for it
+     */
+    public String get(String key, Callable<String> scan) throws ExecutionException, InterruptedException {
+        FutureTask<String> task;
+        boolean owner = false;
+        synchronized (this) {
+            ensureLoaded();
+            if (entries.containsKey(key)) {
+                hits++;
+                return entries.get(key);
+            }
+            task = inFlight.get(key);
+            if (task == null) {
+                misses++;
+                task = new FutureTask<>(scan);
+                inFlight.put(key, task);
+                owner = true;
+            }
+        }
+        if (!owner) {
+            return task.get();
+        }
+        try {
+            task.run();
+            String text = task.get();
+            synchronized (this) {
+                entries.put(key, text);
+                dirty = true;
+            }
+            return text;
+        } finally {
+            synchronized (this) {
+                inFlight.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Write the entries to the cache file if they changed since it was read or last written. Call
+     * it off the main thread, after a scan or a batch of scans. Concurrent saves write one at a
+     * time, each with the entries as they are when its turn comes, so the newest entries win.
+     */
+    public void save() {
+        synchronized (fileLock) {
+            Map<String, String> snapshot;
+            synchronized (this) {
+                if (!dirty) {
+                    return;
+                }
+                dirty = false;
+                snapshot = new LinkedHashMap<>(entries);
+            }
+            write(snapshot);
+        }
+    }
+
+    private void write(Map<String, String> snapshot) {
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                out.writeInt(FILE_VERSION);
+                out.writeInt(snapshot.size());
+                // Least recently used first, so reading the file back keeps the order
+                for (Map.Entry<String, String> entry : snapshot.entrySet()) {
+                    writeString(out, entry.getKey());
+                    out.writeBoolean(entry.getValue() != null);
+                    if (entry.getValue() != null) {
+                        writeString(out, entry.getValue());
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Can not replace " + file);
+            }
+        } catch (IOException e) {
+            temp.delete();
+            synchronized (this) {
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Drop every entry, in memory and on disk.
+     */
+    public void clear() {
+        // Waits for a save in progress, which would otherwise write the entries back
+        synchronized (fileLock) {
+            synchronized (this) {
+                entries.clear();
+                loaded = true;
+                dirty = false;
+            }
+            file.delete();
+        }
+    }
+
+    /**
+     * @return hits and misses since creation, and the entries held
+     */
+    public synchronized Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("hits", hits);
+        statistics.put("misses", misses);
+        statistics.put("entries", (long) entries.size());
+        return statistics;
+    }
+
+    // Reading is deferred to the first lookup, which runs on a worker thread
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!file.isFile()) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != FILE_VERSION) {
+                    return;
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String key = readString(in);
+                    String text = in.readBoolean() ? readString(in) : null;
+                    entries.put(key, text);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // A damaged file only costs the cached results
+            entries.clear();
+        }
+    }
+
+    // writeUTF is limited to 64 KB, more than a PDF417 can hold but not guaranteed for any text
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_TEXT_BYTES) {
+            throw new IOException("Bad entry length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
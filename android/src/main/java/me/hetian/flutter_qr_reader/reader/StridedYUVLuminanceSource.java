@@ -0,0 +1,128 @@
+package me.hetian.flutter_qr_reader.reader;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * The Y plane of a YUV_420_888 image as delivered by camera2 or another camera stack, read in
+ * place through its row and pixel strides. Rows may be padded past the width and the last row
+ * may end right after its last pixel, as in the planes of {@code android.media.Image}, so a frame
+ * is decoded without repacking it into an NV21 buffer first.
+ * <p>
+ * With a pixel stride of 1, which camera2 guarantees for the Y plane, rows are single copies.
+ */
+public final class StridedYUVLuminanceSource extends LuminanceSource {
+
+    private final byte[] yPlane;
+    private final int rowStride;
+    private final int pixelStride;
+    private final int left;
+    private final int top;
+
+    /**
+     * @param yPlane      the Y plane, at least up to the last pixel of the last row
+     * @param width       width of the image
+     * @param height      height of the image
+     * @param rowStride   bytes from the start of one row to the start of the next
+     * @param pixelStride bytes from one pixel to the next within a row
+     */
+    public StridedYUVLuminanceSource(byte[] yPlane, int width, int height, int rowStride, int pixelStride) {
+        this(yPlane, rowStride, pixelStride, 0, 0, width, height);
+        if (width <= 0 || height <= 0 || pixelStride <= 0 || rowStride < (width - 1) * pixelStride + 1) {
+            throw new IllegalArgumentException("Bad strides for " + width + "x" + height
+                    + ": row " + rowStride + ", pixel " + pixelStride);
+        }
+        if (yPlane.length < (long) (height - 1) * rowStride + (long) (width - 1) * pixelStride + 1) {
+            throw new IllegalArgumentException("Y plane smaller than " + width + "x" + height);
+        }
+    }
+
+    private StridedYUVLuminanceSource(byte[] yPlane,
+                                      int rowStride,
+                                      int pixelStride,
+                                      int left,
+                                      int top,
+                                      int width,
+                                      int height) {
+        super(width, height);
+        this.yPlane = yPlane;
+        this.rowStride = rowStride;
+        this.pixelStride = pixelStride;
+        this.left = left;
+        this.top = top;
+    }
+
+    @Override
+    public byte[] getRow(int y, byte[] row) {
+        if (y < 0 || y >= getHeight()) {
+            throw new IllegalArgumentException("Requested row is outside the image: " + y);
+        }
+        int width = getWidth();
+        if (row == null || row.length < width) {
+            row = new byte[width];
+        }
+        copyRow(y, row, 0);
+        return row;
+    }
+
+    @Override
+    public byte[] getMatrix() {
+        int width = getWidth();
+        int height = getHeight();
+
+        // Unpadded rows of the entire plane are the matrix already
+        if (pixelStride == 1 && rowStride == width && left == 0 && top == 0 && yPlane.length >= width * height) {
+            return yPlane;
+        }
+
+        byte[] matrix = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            copyRow(y, matrix, y * width);
+        }
+        return matrix;
+    }
+
+    private void copyRow(int y, byte[] output, int outputOffset) {
+        int width = getWidth();
+        int inputOffset = (y + top) * rowStride + left * pixelStride;
+        if (pixelStride == 1) {
+            System.arraycopy(yPlane, inputOffset, output, outputOffset, width);
+            return;
+        }
+        for (int x = 0; x < width; x++, inputOffset += pixelStride) {
+            output[outputOffset + x] = yPlane[inputOffset];
+        }
+    }
+
+    @Override
+    public boolean isCropSupported() {
+        return true;
+    }
+
+    @Override
+    public LuminanceSource crop(int left, int top, int width, int height) {
+        if (left < 0 || top < 0 || left + width > getWidth() || top + height > getHeight()) {
+            throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+        }
+        return new StridedYUVLuminanceSource(yPlane,
+                rowStride,
+                pixelStride,
+                this.left + left,
+                this.top + top,
+                width,
+                height);
+    }
+
+    @Override
+    public boolean isRotateSupported() {
+        return true;
+    }
+
+    /**
+     * Packs the crop once and rotates the packed copy. Only the 1D readers ask for it, when trying
+     * harder on codes that run vertically.
+     */
+    @Override
+    public LuminanceSource rotateCounterClockwise() {
+        return new GrayscaleLuminanceSource(getMatrix(), getWidth(), getHeight()).rotateCounterClockwise();
+    }
+}
@@ -0,0 +1,40 @@
+package me.hetian.flutter_qr_reader.readerView;
+
+import android.os.Process;
+
+import me.hetian.flutter_qr_reader.reader.ScanPipeline;
+
+/**
+ * Worker thread owned by {@link QRCodeReaderView} that runs a {@link ScanPipeline}, decoding
+ * preview frames off the main thread.
+ */
+final class DecodeThread extends Thread {
+
+    // Slightly above default so a busy host app does not delay scanning, but below display work.
+    private static final int DECODE_THREAD_PRIORITY =
+            Process.THREAD_PRIORITY_DEFAULT + Process.THREAD_PRIORITY_MORE_FAVORABLE;
+
+    private final ScanPipeline pipeline;
+
+    DecodeThread(ScanPipeline pipeline) {
+        super("QRCodeDecodeThread");
+        this.pipeline = pipeline;
+    }
+
+    ScanPipeline getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Stop the worker after the frame in progress. Must be called on the main thread.
+     */
+    void quit() {
+        pipeline.quit();
+    }
+
+    @Override
+    public void run() {
+        Process.setThreadPriority(DECODE_THREAD_PRIORITY);
+        pipeline.run();
+    }
+}
@@ -0,0 +1,60 @@
+package me.hetian.flutter_qr_reader.readerView;
+
+import com.google.zxing.Result;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Drops results that repeat a code already reported within a time window, keyed by barcode
+ * format and text. Every sighting restarts the window of its code, so a code held in view is
+ * reported once and again only after it has been out of view for the whole window.
+ * <p>
+ * Not thread safe, {@link QRCodeReaderView} only uses it on the main thread.
+ */
+final class DuplicateResultFilter {
+
+    // Access ordered, the eldest entry is always the one seen least recently
+    private final LinkedHashMap<String, Long> lastSeen = new LinkedHashMap<>(16, 0.75f, true);
+    private long windowMs;
+
+    /**
+     * @param windowMs time a code is suppressed after it was last seen, 0 disables the filter
+     */
+    void setWindow(long windowMs) {
+        this.windowMs = Math.max(0, windowMs);
+        if (this.windowMs == 0) {
+            lastSeen.clear();
+        }
+    }
+
+    /**
+     * Record a sighting of the result.
+     *
+     * @return true if the result should be reported
+     */
+    boolean accept(Result result, long nowMs) {
+        if (windowMs == 0) {
+            return true;
+        }
+        evictExpired(nowMs);
+        String key = result.getBarcodeFormat() + ":" + result.getText();
+        Long previous = lastSeen.put(key, nowMs);
+        return previous == null;
+    }
+
+    void clear() {
+        lastSeen.clear();
+    }
+
+    private void evictExpired(long nowMs) {
+        Iterator<Map.Entry<String, Long>> iterator = lastSeen.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (nowMs - iterator.next().getValue() < windowMs) {
+                break;
+            }
+            iterator.remove();
+        }
+    }
+}
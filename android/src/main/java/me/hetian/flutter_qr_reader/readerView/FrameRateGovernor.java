@@ -0,0 +1,139 @@
+package me.hetian.flutter_qr_reader.readerView;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decides which preview frames are handed to the decode thread, from moving averages of the
+ * decode time and of the camera frame interval.
+ * <p>
+ * With a duty cycle below 1 the decode thread is kept idle for part of the time: a frame is only
+ * offered once {@code decodeTime / dutyCycle} has passed since the last offered frame, the others
+ * are skipped and go straight back to the camera. With a duty cycle of 1 every frame is offered
+ * and the decode thread keeps only the latest one while busy, as before.
+ * <p>
+ * Not thread safe, {@link QRCodeReaderView} only uses it on the main thread.
+ */
+final class FrameRateGovernor {
+
+    // Weight of the newest sample in the moving averages
+    private static final float SMOOTHING = 0.2f;
+    // Lowest preview frame rate asked for, so the preview stays watchable
+    static final int MIN_PREVIEW_FPS = 15;
+
+    private float dutyCycle = 1;
+    private float decodeTimeMs;
+    private float frameIntervalMs;
+    private long lastFrameMs = -1;
+    private long lastOfferMs = -1;
+    private long previousOfferMs = -1;
+    private long decoded;
+    private long dropped;
+    private long skipped;
+    private long blurry;
+
+    /**
+     * @param dutyCycle share of time the decode thread may spend decoding, in (0, 1]
+     */
+    void setDutyCycle(float dutyCycle) {
+        this.dutyCycle = dutyCycle > 0 && dutyCycle < 1 ? dutyCycle : 1;
+    }
+
+    /**
+     * Record a preview frame.
+     *
+     * @return true if the frame should be decoded, false if it is skipped
+     */
+    boolean onFrame(long nowMs) {
+        if (lastFrameMs >= 0) {
+            frameIntervalMs = average(frameIntervalMs, nowMs - lastFrameMs);
+        }
+        lastFrameMs = nowMs;
+
+        // Half a frame of slack, so that a cadence of n frames does not turn into n + 1
+        if (dutyCycle < 1 && lastOfferMs >= 0
+                && nowMs - lastOfferMs < getDecodeIntervalMs() - frameIntervalMs / 2) {
+            skipped++;
+            return false;
+        }
+        previousOfferMs = lastOfferMs;
+        lastOfferMs = nowMs;
+        return true;
+    }
+
+    /**
+     * Record that the frame just accepted by {@link #onFrame(long)} was too blurry to decode. It
+     * does not count as offered, so the next frame may take its place in the cadence.
+     */
+    void onFrameBlurry() {
+        blurry++;
+        lastOfferMs = previousOfferMs;
+    }
+
+    void onFrameDecoded(long decodeTimeMs) {
+        decoded++;
+        this.decodeTimeMs = average(this.decodeTimeMs, decodeTimeMs);
+    }
+
+    /**
+     * Record a frame that was offered but replaced by a newer one before decoding.
+     */
+    void onFrameDropped() {
+        dropped++;
+    }
+
+    /**
+     * @return time between the frames offered for decoding
+     */
+    float getDecodeIntervalMs() {
+        return Math.max(decodeTimeMs / dutyCycle, frameIntervalMs);
+    }
+
+    /**
+     * @return preview frame rate that still delivers a frame for every decode, never below
+     * {@link #MIN_PREVIEW_FPS}, or 0 while nothing has been measured
+     */
+    int getTargetPreviewFps() {
+        // Not limited by the current frame interval, so the rate can go up again after lowering it
+        float intervalMs = decodeTimeMs / dutyCycle;
+        if (decoded == 0 || intervalMs <= 0) {
+            return 0;
+        }
+        return Math.max(MIN_PREVIEW_FPS, (int) Math.ceil(1000 / intervalMs));
+    }
+
+    long getDecodedCount() {
+        return decoded;
+    }
+
+    /**
+     * @return frame counts and averages of the current session
+     */
+    Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("decoded", decoded);
+        statistics.put("dropped", dropped);
+        statistics.put("skipped", skipped);
+        statistics.put("blurry", blurry);
+        statistics.put("decodeTimeMs", (double) decodeTimeMs);
+        statistics.put("frameIntervalMs", (double) frameIntervalMs);
+        return statistics;
+    }
+
+    /**
+     * Start a new session, the averages are kept as a first estimate.
+     */
+    void reset() {
+        lastFrameMs = -1;
+        lastOfferMs = -1;
+        previousOfferMs = -1;
+        decoded = 0;
+        dropped = 0;
+        skipped = 0;
+        blurry = 0;
+    }
+
+    private static float average(float average, float sample) {
+        return average == 0 ? sample : average + SMOOTHING * (sample - average);
+    }
+}
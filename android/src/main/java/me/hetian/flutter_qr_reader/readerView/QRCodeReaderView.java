@@ -19,40 +19,41 @@ import android.content.Context;
 import android.content.pm.PackageManager;
 import android.graphics.Point;
 import android.graphics.PointF;
+import android.graphics.Rect;
 import android.hardware.Camera;
-import android.os.AsyncTask;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.Surface;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 import android.view.WindowManager;
 
 import com.google.zxing.BarcodeFormat;
-import com.google.zxing.BinaryBitmap;
 import com.google.zxing.DecodeHintType;
-import com.google.zxing.LuminanceSource;
-import com.google.zxing.MultiFormatReader;
-import com.google.zxing.NotFoundException;
-import com.google.zxing.PlanarYUVLuminanceSource;
 import com.google.zxing.Result;
 import com.google.zxing.ResultPoint;
-import com.google.zxing.common.HybridBinarizer;
 
 import java.io.IOException;
-import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.EnumMap;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import com.google.zxing.client.android.camera.CameraManager;
+import com.google.zxing.client.android.camera.PreviewSizePolicy;
 
 import me.hetian.flutter_qr_reader.reader.DecodeFormatManager;
-import me.hetian.flutter_qr_reader.reader.MyMultiFormatReader;
+import me.hetian.flutter_qr_reader.reader.FrameSource;
 import me.hetian.flutter_qr_reader.reader.MyPlanarYUVLuminanceSource;
+import me.hetian.flutter_qr_reader.reader.ScanPipeline;
 
 import static android.hardware.Camera.getCameraInfo;
 
@@ -63,23 +64,57 @@ import static android.hardware.Camera.getCameraInfo;
  * @author David Lázaro
  */
 public class QRCodeReaderView extends SurfaceView
-        implements SurfaceHolder.Callback, Camera.PreviewCallback {
+        implements SurfaceHolder.Callback, FrameSource.FrameCallback {
 
     public interface OnQRCodeReadListener {
 
         void onQRCodeRead(String text, PointF[] points);
     }
 
+    public interface OnMultipleQRCodeReadListener {
+
+        /**
+         * @param results every distinct code found in one frame
+         * @param points  result points of each code, in view coordinates
+         */
+        void onQRCodesRead(Result[] results, PointF[][] points);
+    }
+
     private OnQRCodeReadListener mOnQRCodeReadListener;
+    private OnMultipleQRCodeReadListener mOnMultipleQRCodeReadListener;
 
     private static final String TAG = QRCodeReaderView.class.getName();
+    // Decoded frames between reconsidering the preview fps limit
+    private static final int FPS_UPDATE_FRAMES = 30;
+    private static final int FPS_LIMIT_STEP = 5;
 
-    private MyMultiFormatReader mQRCodeReader;
-    private int mPreviewWidth;
-    private int mPreviewHeight;
     private CameraManager mCameraManager;
+    // Where decoded frames come from and go back to, the camera preview
+    private FrameSource mFrameSource;
     private boolean mQrDecodingEnabled = true;
-    private DecodeFrameTask decodeFrameTask;
+    private boolean mAdaptiveDecoding;
+    private boolean mPyramidDecoding;
+    private boolean mMultipleDecoding;
+    private DecodeThread mDecodeThread;
+    private DecodeListener mDecodeListener;
+    private final Executor mMainExecutor = new Executor() {
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable command) {
+            handler.post(command);
+        }
+    };
+    private final QRToViewPointTransformer mQrToViewPointTransformer =
+            new QRToViewPointTransformer();
+    private final DuplicateResultFilter mDuplicateResultFilter = new DuplicateResultFilter();
+    private final FrameRateGovernor mFrameRateGovernor = new FrameRateGovernor();
+    private final SharpnessFilter mSharpnessFilter = new SharpnessFilter();
+    private boolean mSkipBlurryFrames;
+    private boolean mAdjustPreviewFps;
+    // Preview fps limit asked of the current camera, 0 when it runs at its fastest rate
+    private int mPreviewFpsLimit;
+    // Replaced, never mutated, so the decode thread can compare it by identity
     private Map<DecodeHintType, Object> decodeHints;
 
     public QRCodeReaderView(Context context) {
@@ -92,14 +127,12 @@ public class QRCodeReaderView extends SurfaceView
         if (isInEditMode()) {
             return;
         }
-        decodeHints = new EnumMap<>(DecodeHintType.class);
-        decodeHints.put(DecodeHintType.TRY_HARDER, BarcodeFormat.QR_CODE);
-        decodeHints.put(DecodeHintType.CHARACTER_SET, "utf-8");
-//        decodeHints.put(DecodeHintType.PURE_BARCODE, Boolean.FALSE);
+        setDecodeHints(DecodeFormatManager.ALL_MODE);
 
         if (checkCameraHardware()) {
             mCameraManager = new CameraManager(getContext());
-            mCameraManager.setPreviewCallback(this);
+            mFrameSource = mCameraManager;
+            mFrameSource.setFrameCallback(this);
             getHolder().addCallback(this);
             setBackCamera();
         } else {
@@ -116,6 +149,16 @@ public class QRCodeReaderView extends SurfaceView
         mOnQRCodeReadListener = onQRCodeReadListener;
     }
 
+    /**
+     * Set the callback to return every code of a frame, used when multiple decoding is enabled
+     *
+     * @param onMultipleQRCodeReadListener the listener
+     */
+    public void setOnMultipleQRCodeReadListener(
+            OnMultipleQRCodeReadListener onMultipleQRCodeReadListener) {
+        mOnMultipleQRCodeReadListener = onMultipleQRCodeReadListener;
+    }
+
     /**
      * Enable/disable logging, false by default
      *
@@ -160,13 +203,24 @@ public class QRCodeReaderView extends SurfaceView
             default:
                 break;
         }
-        decodeHints.put(DecodeHintType.POSSIBLE_FORMATS, decodeFormats);
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.TRY_HARDER, BarcodeFormat.QR_CODE);
+        hints.put(DecodeHintType.CHARACTER_SET, "utf-8");
+//        hints.put(DecodeHintType.PURE_BARCODE, Boolean.FALSE);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, decodeFormats);
+        // The decode thread rebuilds its reader chain when it sees a new map
+        decodeHints = hints;
+        applyDecodeSettings();
     }
 
     /**
      * Starts google.zxing.client.android.android.com.google.zxing.client.android.camera preview and decoding
      */
     public void startCamera() {
+        // A new scan reports codes still in view again
+        mDuplicateResultFilter.clear();
+        mFrameRateGovernor.reset();
+        mSharpnessFilter.reset();
         mCameraManager.startPreview();
     }
 
@@ -234,18 +288,181 @@ public class QRCodeReaderView extends SurfaceView
         setPreviewCameraId(Camera.CameraInfo.CAMERA_FACING_FRONT);
     }
 
+    /**
+     * Only decode codes inside part of the view, which saves most of the work when the UI shows a
+     * small viewfinder.
+     *
+     * @param scanRect scan area in view pixels, or null to decode the whole preview
+     */
+    public void setScanRect(Rect scanRect) {
+        if (mCameraManager != null) {
+            mCameraManager.setFramingRect(scanRect);
+        }
+    }
+
+    /**
+     * Choose the preview size for decoding instead of matching the view, see
+     * {@link PreviewSizePolicy}. Must be set before the surface is created to apply to the first
+     * camera open.
+     * default value is null, which picks the preview size closest to the view
+     *
+     * @param policy the preview size policy, or null
+     */
+    public void setPreviewSizePolicy(PreviewSizePolicy policy) {
+        if (mCameraManager != null) {
+            mCameraManager.setPreviewSizePolicy(policy);
+        }
+    }
+
+    /**
+     * Try the barcode readers with the most recent hits first, and skip readers without recent
+     * hits on most frames. Useful when nearly all scans use the same format.
+     * default value is false
+     *
+     * @param adaptiveDecoding adaptive decoding enabled/disabled
+     */
+    public void setAdaptiveDecoding(boolean adaptiveDecoding) {
+        mAdaptiveDecoding = adaptiveDecoding;
+        applyDecodeSettings();
+    }
+
+    /**
+     * Decode each frame at half resolution first and only fall back to the full preview when
+     * nothing is found or the code is small. Large codes close to the camera decode several times
+     * faster, which helps devices that cannot keep up with the preview frame rate.
+     * Not used when multiple decoding is enabled.
+     * default value is false
+     *
+     * @param pyramidDecoding pyramid decoding enabled/disabled
+     */
+    public void setPyramidDecoding(boolean pyramidDecoding) {
+        mPyramidDecoding = pyramidDecoding;
+        applyDecodeSettings();
+    }
+
+    /**
+     * Limit the share of time spent decoding, to save CPU and battery. Frames are then decoded at
+     * a cadence derived from the measured decode time and camera frame interval, the frames in
+     * between are skipped.
+     * default value is 1, which decodes whenever the decode thread is idle
+     *
+     * @param dutyCycle share of time the decode thread may be busy, in (0, 1]
+     */
+    public void setDecodeDutyCycle(float dutyCycle) {
+        mFrameRateGovernor.setDutyCycle(dutyCycle);
+    }
+
+    /**
+     * Lower the camera preview frame rate (not below 15 fps) when frames are decoded less often
+     * than the camera delivers them. The preview on screen runs at the lowered rate as well.
+     * default value is false
+     *
+     * @param adjustPreviewFps preview fps adjustment enabled/disabled
+     */
+    public void setPreviewFpsAdjustment(boolean adjustPreviewFps) {
+        mAdjustPreviewFps = adjustPreviewFps;
+        if (!adjustPreviewFps && mPreviewFpsLimit != 0 && mCameraManager != null) {
+            mCameraManager.setPreviewFpsLimit(0);
+            mPreviewFpsLimit = 0;
+        }
+    }
+
+    /**
+     * Skip frames that are much blurrier than the recent ones, such as frames taken while auto
+     * focus is sweeping or the camera is moving, instead of spending a full decode on them. A
+     * blurry frame never replaces a sharp frame waiting for the decode thread.
+     * default value is false
+     *
+     * @param skipBlurryFrames blurry frame skipping enabled/disabled
+     */
+    public void setSkipBlurryFrames(boolean skipBlurryFrames) {
+        mSkipBlurryFrames = skipBlurryFrames;
+        mSharpnessFilter.reset();
+    }
+
+    /**
+     * @return decoded, dropped, skipped and blurry frames since {@link #startCamera()}, with the
+     * average decode time and frame interval in milliseconds
+     */
+    public Map<String, Object> getFrameStatistics() {
+        return mFrameRateGovernor.getStatistics();
+    }
+
+    /**
+     * Report a code only once while it stays in view. A code is reported again after it has not
+     * been decoded for the whole window, or after {@link #startCamera()}.
+     * default value is 0, which reports every decoded frame
+     *
+     * @param windowMs duplicate window in milliseconds
+     */
+    public void setDuplicateWindow(long windowMs) {
+        mDuplicateResultFilter.setWindow(windowMs);
+    }
+
+    /**
+     * Look for every code in a frame instead of stopping at the first one. Results go to the
+     * {@link OnMultipleQRCodeReadListener}, or the first result to the {@link OnQRCodeReadListener}
+     * when no multiple listener is set.
+     * default value is false
+     *
+     * @param multipleDecoding multiple decoding enabled/disabled
+     */
+    public void setMultipleDecodingEnabled(boolean multipleDecoding) {
+        mMultipleDecoding = multipleDecoding;
+        applyDecodeSettings();
+    }
+
+    /**
+     * @return recent successful decodes per barcode format of the current decode thread
+     */
+    public Map<BarcodeFormat, Integer> getFormatHitCounts() {
+        DecodeThread thread = mDecodeThread;
+        return thread != null ? thread.getPipeline().getDecoder().getReader().getFormatHitCounts()
+                : new EnumMap<BarcodeFormat, Integer>(BarcodeFormat.class);
+    }
+
+    /**
+     * @return binarizer attempts and hits of the current decode thread, see
+     * {@link me.hetian.flutter_qr_reader.reader.BinarizerStrategy#getStatistics()}
+     */
+    public Map<String, Long> getBinarizerStatistics() {
+        DecodeThread thread = mDecodeThread;
+        return thread != null ? thread.getPipeline().getDecoder().getBinarizerStrategy().getStatistics()
+                : new HashMap<String, Long>();
+    }
+
+    /**
+     * @return barcode readers of the current decode thread in the order they are tried
+     */
+    public List<String> getReaderOrder() {
+        DecodeThread thread = mDecodeThread;
+        return thread != null ? thread.getPipeline().getDecoder().getReader().getReaderOrder()
+                : new ArrayList<String>();
+    }
+
+    /**
+     * @return number of preview frames whose buffer was recycled into the camera
+     */
+    public long getPreviewBufferHits() {
+        return mCameraManager != null ? mCameraManager.getPreviewBufferHits() : 0;
+    }
+
+    /**
+     * @return number of preview buffers that had to be allocated
+     */
+    public long getPreviewBufferMisses() {
+        return mCameraManager != null ? mCameraManager.getPreviewBufferMisses() : 0;
+    }
+
     @Override
     public void onDetachedFromWindow() {
         super.onDetachedFromWindow();
 
-        if (decodeFrameTask != null) {
-            decodeFrameTask.cancel(true);
-            decodeFrameTask = null;
-        }
+        stopDecodeThread();
     }
 
     /****************************************************
-     * SurfaceHolder.Callback,Camera.PreviewCallback
+     * SurfaceHolder.Callback,FrameSource.FrameCallback
      ****************************************************/
 
     @Override
@@ -255,13 +472,15 @@ public class QRCodeReaderView extends SurfaceView
         try {
             // Indicate google.zxing.client.android.android.com.google.zxing.client.android.camera, our View dimensions
             mCameraManager.openDriver(holder, this.getWidth(), this.getHeight());
+            // A newly opened camera starts at its default frame rate
+            mPreviewFpsLimit = 0;
         } catch (IOException | RuntimeException e) {
             SimpleLog.w(TAG, "Can not openDriver: " + e.getMessage());
             mCameraManager.closeDriver();
         }
 
         try {
-            mQRCodeReader = new MyMultiFormatReader();
+            startDecodeThread();
             mCameraManager.startPreview();
         } catch (Exception e) {
             SimpleLog.e(TAG, "Exception: " + e.getMessage());
@@ -283,13 +502,10 @@ public class QRCodeReaderView extends SurfaceView
             return;
         }
 
-        mPreviewWidth = mCameraManager.getPreviewSize().x;
-        mPreviewHeight = mCameraManager.getPreviewSize().y;
-
         mCameraManager.stopPreview();
 
         // Fix the google.zxing.client.android.android.com.google.zxing.client.android.camera sensor rotation
-        mCameraManager.setPreviewCallback(this);
+        mFrameSource.setFrameCallback(this);
         mCameraManager.setDisplayOrientation(getCameraDisplayOrientation());
 
         mCameraManager.startPreview();
@@ -299,24 +515,61 @@ public class QRCodeReaderView extends SurfaceView
     public void surfaceDestroyed(SurfaceHolder holder) {
         SimpleLog.d(TAG, "surfaceDestroyed");
 
-        mCameraManager.setPreviewCallback(null);
+        mFrameSource.setFrameCallback(null);
         mCameraManager.stopPreview();
         mCameraManager.closeDriver();
+        stopDecodeThread();
     }
 
     // Called when google.zxing.client.android.android.com.google.zxing.client.android.camera take a frame
     @Override
-    public void onPreviewFrame(byte[] data, Camera camera) {
-        if (!mQrDecodingEnabled || decodeFrameTask != null
-                && (decodeFrameTask.getStatus() == AsyncTask.Status.RUNNING
-                || decodeFrameTask.getStatus() == AsyncTask.Status.PENDING)) {
+    public void onFrame(byte[] data, int width, int height, int rotation, long timestampMs) {
+        if (!mQrDecodingEnabled || mDecodeThread == null) {
+            mFrameSource.releaseFrame(data);
             return;
         }
-        if (!decodeHints.containsKey(DecodeHintType.POSSIBLE_FORMATS)) {
-            this.setDecodeHints(DecodeFormatManager.ALL_MODE);
+        if (!mFrameRateGovernor.onFrame(timestampMs)) {
+            mFrameSource.releaseFrame(data);
+            return;
+        }
+        // Cropped to the scan area, the whole frame when the area does not fit this frame
+        MyPlanarYUVLuminanceSource frame = mCameraManager.buildLuminanceSource(data, width, height,
+                mCameraManager.getFramingRectInPreview());
+        // Scored over the scan area only, a sparse sample that is cheap enough for the main thread
+        if (mSkipBlurryFrames && !mSharpnessFilter.accept(frame.sharpness())) {
+            mFrameRateGovernor.onFrameBlurry();
+            mFrameSource.releaseFrame(data);
+            return;
+        }
+        mDecodeThread.getPipeline().offer(frame, rotation);
+    }
+
+    private void startDecodeThread() {
+        if (mDecodeThread == null) {
+            // Each thread gets its own reader chain, a stopping thread may still finish a frame
+            mDecodeListener = new DecodeListener();
+            mDecodeThread = new DecodeThread(new ScanPipeline(mFrameSource, mMainExecutor, mDecodeListener));
+            applyDecodeSettings();
+            mDecodeThread.start();
+        }
+    }
+
+    private void stopDecodeThread() {
+        if (mDecodeThread != null) {
+            mDecodeThread.quit();
+            mDecodeThread = null;
+            mDecodeListener = null;
+        }
+    }
+
+    private void applyDecodeSettings() {
+        if (mDecodeThread != null) {
+            ScanPipeline pipeline = mDecodeThread.getPipeline();
+            pipeline.setHints(decodeHints);
+            pipeline.setAdaptive(mAdaptiveDecoding);
+            pipeline.setPyramid(mPyramidDecoding);
+            pipeline.setMultiple(mMultipleDecoding);
         }
-        decodeFrameTask = new DecodeFrameTask(this, decodeHints);
-        decodeFrameTask.execute(data);
     }
 
     /**
@@ -377,82 +630,82 @@ public class QRCodeReaderView extends SurfaceView
         return result;
     }
 
-    private static class DecodeFrameTask extends AsyncTask<byte[], Void, Result> {
-
-        private final WeakReference<QRCodeReaderView> viewRef;
-        private final WeakReference<Map<DecodeHintType, Object>> hintsRef;
-        private final QRToViewPointTransformer qrToViewPointTransformer =
-                new QRToViewPointTransformer();
-
-        DecodeFrameTask(QRCodeReaderView view, Map<DecodeHintType, Object> hints) {
-            viewRef = new WeakReference<>(view);
-            hintsRef = new WeakReference<>(hints);
-        }
+    private class DecodeListener implements ScanPipeline.Listener {
 
         @Override
-        protected Result doInBackground(byte[]... params) {
-            final QRCodeReaderView view = viewRef.get();
-            if (view == null) {
-                return null;
+        public void onFrameDecoded(Result[] results, long decodeTimeNanos) {
+            mFrameRateGovernor.onFrameDecoded(decodeTimeNanos / 1000000);
+            if (mAdjustPreviewFps && mFrameRateGovernor.getDecodedCount() % FPS_UPDATE_FRAMES == 0) {
+                updatePreviewFpsLimit();
             }
 
-            LuminanceSource source =
-                    view.mCameraManager.buildLuminanceSource(params[0], view.mPreviewWidth,
-                            view.mPreviewHeight);
-
-            source = source.rotateCounterClockwise();
-            final HybridBinarizer hybBin = new HybridBinarizer(source);
-            final BinaryBitmap bitmap = new BinaryBitmap(hybBin);
-
-            try {
-                Log.i(TAG, "doInBackground: " + hintsRef.get());
-                return view.mQRCodeReader.decode(bitmap, hintsRef.get());
-            } catch (NotFoundException e) {
-                Log.i(TAG, "doInBackground: " + e.getLocalizedMessage());
-                e.printStackTrace();
-            } finally {
-                view.mQRCodeReader.reset();
+            if (results == null || results.length == 0 || this != mDecodeListener) {
+                return;
+            }
+            results = filterDuplicates(results);
+            if (results.length == 0) {
+                return;
+            }
+            // Notify we found a QRCode
+            if (mMultipleDecoding && mOnMultipleQRCodeReadListener != null) {
+                PointF[][] transformedPoints = new PointF[results.length][];
+                for (int i = 0; i < results.length; i++) {
+                    transformedPoints[i] = transformToViewCoordinates(results[i].getResultPoints());
+                }
+                mOnMultipleQRCodeReadListener.onQRCodesRead(results, transformedPoints);
+            } else if (mOnQRCodeReadListener != null) {
+                // Transform resultPoints to View coordinates
+                final PointF[] transformedPoints = transformToViewCoordinates(results[0].getResultPoints());
+                mOnQRCodeReadListener.onQRCodeRead(results[0].getText(), transformedPoints);
             }
-
-            return null;
         }
 
         @Override
-        protected void onPostExecute(Result result) {
-            super.onPostExecute(result);
+        public void onFrameDropped() {
+            mFrameRateGovernor.onFrameDropped();
+        }
+    }
 
-            final QRCodeReaderView view = viewRef.get();
+    private void updatePreviewFpsLimit() {
+        int fps = mFrameRateGovernor.getTargetPreviewFps();
+        // Changing the range can stall the preview for a moment, only follow larger changes
+        if (fps > 0 && Math.abs(fps - mPreviewFpsLimit) >= FPS_LIMIT_STEP
+                && mCameraManager.setPreviewFpsLimit(fps)) {
+            mPreviewFpsLimit = fps;
+        }
+    }
 
-            // Notify we found a QRCode
-            if (view != null && result != null && view.mOnQRCodeReadListener != null) {
-                // Transform resultPoints to View coordinates
-                final PointF[] transformedPoints = transformToViewCoordinates(view, result.getResultPoints());
-                view.mOnQRCodeReadListener.onQRCodeRead(result.getText(), transformedPoints);
+    private Result[] filterDuplicates(Result[] results) {
+        long now = SystemClock.elapsedRealtime();
+        int accepted = 0;
+        for (Result result : results) {
+            if (mDuplicateResultFilter.accept(result, now)) {
+                results[accepted++] = result;
             }
         }
+        return accepted == results.length ? results : Arrays.copyOf(results, accepted);
+    }
 
-        /**
-         * Transform result to surfaceView coordinates
-         * <p>
-         * This method is needed because coordinates are given in landscape google.zxing.client.android.android.com.google.zxing.client.android.camera coordinates when
-         * device is in portrait mode and different coordinates otherwise.
-         *
-         * @return a new PointF array with transformed points
-         */
-        private PointF[] transformToViewCoordinates(QRCodeReaderView view,
-                                                    ResultPoint[] resultPoints) {
-            int orientationDegrees = view.getCameraDisplayOrientation();
-            Orientation orientation =
-                    orientationDegrees == 90 || orientationDegrees == 270 ? Orientation.PORTRAIT
-                            : Orientation.LANDSCAPE;
-            Point viewSize = new Point(view.getWidth(), view.getHeight());
-            Point cameraPreviewSize = view.mCameraManager.getPreviewSize();
-            boolean isMirrorCamera =
-                    view.mCameraManager.getPreviewCameraId()
-                            == Camera.CameraInfo.CAMERA_FACING_FRONT;
-
-            return qrToViewPointTransformer.transform(resultPoints, isMirrorCamera, orientation,
-                    viewSize, cameraPreviewSize);
-        }
+    /**
+     * Transform result to surfaceView coordinates
+     * <p>
+     * This method is needed because coordinates are given in landscape google.zxing.client.android.android.com.google.zxing.client.android.camera coordinates when
+     * device is in portrait mode and different coordinates otherwise.
+     *
+     * @return a new PointF array with transformed points
+     */
+    private PointF[] transformToViewCoordinates(ResultPoint[] resultPoints) {
+        int orientationDegrees = getCameraDisplayOrientation();
+        Orientation orientation =
+                orientationDegrees == 90 || orientationDegrees == 270 ? Orientation.PORTRAIT
+                        : Orientation.LANDSCAPE;
+        Point viewSize = new Point(getWidth(), getHeight());
+        Point cameraPreviewSize = mCameraManager.getPreviewSize();
+        boolean isMirrorCamera =
+                mCameraManager.getPreviewCameraId()
+                        == Camera.CameraInfo.CAMERA_FACING_FRONT;
+
+        return mQrToViewPointTransformer.transform(resultPoints, isMirrorCamera, orientation,
+                viewSize, cameraPreviewSize);
     }
 }
@@ -0,0 +1,34 @@
+package me.hetian.flutter_qr_reader.readerView;
+
+/**
+ * Skips preview frames that are much blurrier than the recent ones, typically while auto focus
+ * is sweeping or the camera is moving. A frame passes when its sharpness score reaches
+ * {@link #THRESHOLD_RATIO} of a decaying peak of recent scores. The decay makes the threshold
+ * follow a scene that is less detailed, so decoding never stops for more than a moment.
+ * <p>
+ * Not thread safe, {@link QRCodeReaderView} only uses it on the main thread.
+ */
+final class SharpnessFilter {
+
+    // Below the measured floor, a blurred frame that still decoded scored under a fifth of the
+    // sharp peak
+    private static final float THRESHOLD_RATIO = 0.15f;
+    // Per frame, at 30 fps the threshold halves in about half a second
+    private static final float PEAK_DECAY = 0.95f;
+
+    private float peak;
+
+    /**
+     * Record the score of a frame.
+     *
+     * @return true if the frame is sharp enough to decode
+     */
+    boolean accept(float sharpness) {
+        peak = Math.max(sharpness, peak * PEAK_DECAY);
+        return sharpness >= peak * THRESHOLD_RATIO;
+    }
+
+    void reset() {
+        peak = 0;
+    }
+}
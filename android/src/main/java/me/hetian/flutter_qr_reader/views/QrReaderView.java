@@ -3,10 +3,16 @@ package me.hetian.flutter_qr_reader.views;
 import android.app.ActionBar;
 import android.content.Context;
 import android.graphics.PointF;
+import android.graphics.Rect;
 import android.view.View;
 
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import com.google.zxing.client.android.camera.PreviewSizePolicy;
+
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import io.flutter.plugin.common.BinaryMessenger;
@@ -15,7 +21,8 @@ import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.platform.PlatformView;
 import me.hetian.flutter_qr_reader.readerView.QRCodeReaderView;
 
-public class QrReaderView implements PlatformView, QRCodeReaderView.OnQRCodeReadListener, MethodChannel.MethodCallHandler {
+public class QrReaderView implements PlatformView, QRCodeReaderView.OnQRCodeReadListener,
+        QRCodeReaderView.OnMultipleQRCodeReadListener, MethodChannel.MethodCallHandler {
 
     private final MethodChannel mMethodChannel;
     private final Context mContext;
@@ -25,6 +32,15 @@ public class QrReaderView implements PlatformView, QRCodeReaderView.OnQRCodeRead
 
     public static String EXTRA_FOCUS_INTERVAL = "extra_focus_interval";
     public static String EXTRA_TORCH_ENABLED = "extra_torch_enabled";
+    public static String EXTRA_SCAN_RECT = "extra_scan_rect";
+    public static String EXTRA_ADAPTIVE_DECODING = "extra_adaptive_decoding";
+    public static String EXTRA_PYRAMID_DECODING = "extra_pyramid_decoding";
+    public static String EXTRA_MULTIPLE_DECODING = "extra_multiple_decoding";
+    public static String EXTRA_DUPLICATE_WINDOW = "extra_duplicate_window";
+    public static String EXTRA_DECODE_DUTY_CYCLE = "extra_decode_duty_cycle";
+    public static String EXTRA_ADJUST_PREVIEW_FPS = "extra_adjust_preview_fps";
+    public static String EXTRA_SKIP_BLURRY_FRAMES = "extra_skip_blurry_frames";
+    public static String EXTRA_PREVIEW_CODE_MODULES = "extra_preview_code_modules";
 
     public QrReaderView(Context context, BinaryMessenger binaryMessenger, int id, Map<String, Object> params){
         this.mContext = context;
@@ -43,6 +59,59 @@ public class QrReaderView implements PlatformView, QRCodeReaderView.OnQRCodeRead
         int interval = mParams.containsKey(EXTRA_FOCUS_INTERVAL) ? (int) mParams.get(EXTRA_FOCUS_INTERVAL) : 2000;
         _view.setAutofocusInterval(interval);
         _view.setTorchEnabled((boolean)mParams.get(EXTRA_TORCH_ENABLED));
+        // 扫码区域 [left, top, width, height]，单位为像素
+        Object scanRect = mParams.get(EXTRA_SCAN_RECT);
+        if (scanRect instanceof List && ((List<?>) scanRect).size() == 4) {
+            List<?> rect = (List<?>) scanRect;
+            int left = ((Number) rect.get(0)).intValue();
+            int top = ((Number) rect.get(1)).intValue();
+            _view.setScanRect(new Rect(left, top,
+                    left + ((Number) rect.get(2)).intValue(), top + ((Number) rect.get(3)).intValue()));
+        }
+
+        // 按最密的码的模块数与机型性能选择预览分辨率，而不是按屏幕
+        Object codeModules = mParams.get(EXTRA_PREVIEW_CODE_MODULES);
+        if (codeModules instanceof Number && ((Number) codeModules).intValue() > 0) {
+            _view.setPreviewSizePolicy(PreviewSizePolicy.forDevice(mContext)
+                    .setCodeModules(((Number) codeModules).intValue()));
+        }
+
+        if (Boolean.TRUE.equals(mParams.get(EXTRA_ADAPTIVE_DECODING))) {
+            _view.setAdaptiveDecoding(true);
+        }
+
+        // 先以一半分辨率识别，失败或码较小时再识别原图
+        if (Boolean.TRUE.equals(mParams.get(EXTRA_PYRAMID_DECODING))) {
+            _view.setPyramidDecoding(true);
+        }
+
+        // 同一个码在该时间（毫秒）内重复识别时不再回调
+        Object duplicateWindow = mParams.get(EXTRA_DUPLICATE_WINDOW);
+        if (duplicateWindow instanceof Number) {
+            _view.setDuplicateWindow(((Number) duplicateWindow).longValue());
+        }
+
+        // 识别耗时占比上限，按实测识别耗时与帧间隔跳过部分帧以省电
+        Object dutyCycle = mParams.get(EXTRA_DECODE_DUTY_CYCLE);
+        if (dutyCycle instanceof Number) {
+            _view.setDecodeDutyCycle(((Number) dutyCycle).floatValue());
+        }
+
+        // 识别跟不上时降低相机预览帧率
+        if (Boolean.TRUE.equals(mParams.get(EXTRA_ADJUST_PREVIEW_FPS))) {
+            _view.setPreviewFpsAdjustment(true);
+        }
+
+        // 跳过对焦中或晃动造成的模糊帧
+        if (Boolean.TRUE.equals(mParams.get(EXTRA_SKIP_BLURRY_FRAMES))) {
+            _view.setSkipBlurryFrames(true);
+        }
+
+        // 一帧中识别多个码，通过 onQRCodesRead 一次返回
+        if (Boolean.TRUE.equals(mParams.get(EXTRA_MULTIPLE_DECODING))) {
+            _view.setOnMultipleQRCodeReadListener(this);
+            _view.setMultipleDecodingEnabled(true);
+        }
 
         // 操作监听
         mMethodChannel = new MethodChannel(binaryMessenger, "me.hetian.plugins/flutter_qr_reader/reader_view_" + id);
@@ -72,6 +141,38 @@ public class QrReaderView implements PlatformView, QRCodeReaderView.OnQRCodeRead
         mMethodChannel.invokeMethod("onQRCodeRead", rest);
     }
 
+    @Override
+    public void onQRCodesRead(Result[] results, PointF[][] points) {
+        ArrayList<Map<String, Object>> codes = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < results.length; i++) {
+            HashMap<String, Object> rest = new HashMap<String, Object>();
+            rest.put("text", results[i].getText());
+            rest.put("format", results[i].getBarcodeFormat().name());
+            ArrayList<String> poi = new ArrayList<String>();
+            for (PointF point : points[i]) {
+                poi.add(point.x + "," + point.y);
+            }
+            rest.put("points", poi);
+            codes.add(rest);
+        }
+        mMethodChannel.invokeMethod("onQRCodesRead", codes);
+    }
+
+    private Map<String, Object> getDecodeStatistics() {
+        HashMap<String, Object> stats = new HashMap<String, Object>();
+        HashMap<String, Object> formatHits = new HashMap<String, Object>();
+        for (Map.Entry<BarcodeFormat, Integer> entry : _view.getFormatHitCounts().entrySet()) {
+            formatHits.put(entry.getKey().name(), entry.getValue());
+        }
+        stats.put("formatHits", formatHits);
+        stats.put("readerOrder", _view.getReaderOrder());
+        stats.put("binarizer", _view.getBinarizerStatistics());
+        stats.put("frames", _view.getFrameStatistics());
+        stats.put("previewBufferHits", _view.getPreviewBufferHits());
+        stats.put("previewBufferMisses", _view.getPreviewBufferMisses());
+        return stats;
+    }
+
     boolean flashlight;
     @Override
     public void onMethodCall(MethodCall methodCall, MethodChannel.Result result) {
@@ -89,6 +190,9 @@ public class QrReaderView implements PlatformView, QRCodeReaderView.OnQRCodeRead
                 _view.stopCamera();
                 result.success(true);
                 break;
+            case "getDecodeStatistics":
+                result.success(getDecodeStatistics());
+                break;
         }
 
     }
@@ -302,6 +302,12 @@ class QrcodeReaderViewState extends State<QrcodeReaderView> with TickerProviderS
                       width: constraints.maxWidth,
                       height: constraints.maxHeight,
                       callback: _onCreateController,
+                      scanRect: Rect.fromLTWH(
+                        (constraints.maxWidth - qrScanSize) / 2,
+                        (constraints.maxHeight - qrScanSize) * 0.333333,
+                        qrScanSize,
+                        qrScanSize,
+                      ),
                     )
                   : Container(),
             ),
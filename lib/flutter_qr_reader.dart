@@ -9,15 +9,109 @@ import 'package:flutter/widgets.dart';
 class FlutterQrReader {
   static const MethodChannel _channel = const MethodChannel('me.hetian.plugins/flutter_qr_reader');
 
-  static Future<String> imgScan(String path) async {
+  /// [parallel] 为 true 时多核并行识别（仅Android）
+  /// [rotation] 摆正图片需要顺时针旋转的角度，为空时按图片 EXIF 中的方向（仅Android）
+  static Future<String> imgScan(String path, {bool parallel = false, int? rotation}) async {
     try {
-      final rest = await _channel.invokeMethod("imgQrCode", {"file": path});
+      final rest = await _channel.invokeMethod("imgQrCode", {"file": path, "parallel": parallel, "rotation": rotation});
       return rest;
     } catch (e) {
       debugPrint(e.toString());
       return '';
     }
   }
+
+  /// 识别内存中的图片，不写临时文件（仅Android）
+  /// [bytes] 为 JPEG、PNG 等图片文件的内容；给出 [width]、[height] 时为灰度或 NV21 图像，只读取 Y 平面
+  /// [rotation] 摆正图片需要顺时针旋转的角度，默认不旋转
+  static Future<String> imgScanBytes(Uint8List bytes, {int? width, int? height, int? rotation}) async {
+    try {
+      final rest = await _channel.invokeMethod("imgQrCodeBytes", {"bytes": bytes, "width": width, "height": height, "rotation": rotation});
+      return rest;
+    } catch (e) {
+      debugPrint(e.toString());
+      return '';
+    }
+  }
+
+  /// 识别其他相机插件（如 camera 的 CameraImage）给出的 YUV_420_888 帧，未识别到时为 null（仅Android）
+  /// 只需要 Y 平面：[yPlane] 为 planes[0].bytes，[bytesPerRow]、[bytesPerPixel] 为其步长，为空时按紧密排列
+  /// 上一帧返回前不要发送下一帧，多余的帧只会在解码线程池中排队
+  static Future<String?> imgScanYuv(Uint8List yPlane, int width, int height, {int? bytesPerRow, int? bytesPerPixel}) async {
+    try {
+      return await _channel.invokeMethod<String>("imgQrCodeYuv", {
+        "bytes": yPlane,
+        "width": width,
+        "height": height,
+        "bytesPerRow": bytesPerRow,
+        "bytesPerPixel": bytesPerPixel,
+      });
+    } catch (e) {
+      debugPrint(e.toString());
+      return null;
+    }
+  }
+
+  /// 批量识别图片，返回 路径 -> 内容，未识别到的为 null（仅Android）
+  static Future<Map<String, String?>> imgScanBatch(List<String> paths) async {
+    try {
+      final rest = await _channel.invokeMapMethod<String, String?>("imgQrCodeBatch", {"files": paths});
+      return rest ?? {};
+    } catch (e) {
+      debugPrint(e.toString());
+      return {};
+    }
+  }
+
+  /// 图片识别统计，binarizer 为各二值化方式的尝试与成功次数，cache 为识别结果缓存的命中次数（仅Android）
+  static Future<Map<dynamic, dynamic>?> getImageDecodeStatistics() async {
+    return _channel.invokeMethod<Map<dynamic, dynamic>>("getImageDecodeStatistics");
+  }
+
+  /// 清空 imgScan、imgScanBatch 的识别结果缓存（仅Android）
+  /// 未修改的图片的结果（包括没有码）会缓存在应用缓存目录中，图片修改后自动重新识别
+  static Future<void> clearImageScanCache() async {
+    await _channel.invokeMethod("clearImageScanCache");
+  }
+
+  /// 识别图片中的所有码，坐标为摆正后解码图片中的像素坐标（仅Android）
+  /// [rotation] 摆正图片需要顺时针旋转的角度，为空时按图片 EXIF 中的方向
+  /// [tiled] 按原始分辨率分块识别，用于大照片中的小码，较慢，坐标为摆正后原图中的坐标
+  static Future<List<QrCodeResult>> imgScanMultiple(String path, {int? rotation, bool tiled = false}) async {
+    try {
+      final rest = await _channel.invokeListMethod<Map<dynamic, dynamic>>("imgQrCodeMulti", {"file": path, "rotation": rotation, "tiled": tiled});
+      return (rest ?? []).map((code) => QrCodeResult.fromMap(code)).toList();
+    } catch (e) {
+      debugPrint(e.toString());
+      return [];
+    }
+  }
+}
+
+/// 一个识别结果
+class QrCodeResult {
+  final String text;
+
+  /// 码制，如 QR_CODE、CODE_128
+  final String format;
+  final List<Offset> points;
+
+  QrCodeResult(this.text, this.format, this.points);
+
+  factory QrCodeResult.fromMap(Map<dynamic, dynamic> map) {
+    return QrCodeResult(map["text"], map["format"] ?? "", _parsePoints(map["points"]));
+  }
+}
+
+List<Offset> _parsePoints(dynamic pointsStrs) {
+  final points = <Offset>[];
+  if (pointsStrs != null) {
+    for (String point in pointsStrs) {
+      final a = point.split(",");
+      points.add(Offset(double.tryParse(a.first) ?? 0, double.tryParse(a.last) ?? 0));
+    }
+  }
+  return points;
 }
 
 class QrReaderView extends StatefulWidget {
@@ -28,6 +122,34 @@ class QrReaderView extends StatefulWidget {
   final double width;
   final double height;
 
+  /// 只识别该区域内的码，坐标相对于本控件；为空时识别整个画面（仅Android）
+  final Rect? scanRect;
+
+  /// 优先尝试最近识别成功的码制，适合几乎只扫同一种码的场景（仅Android）
+  final bool adaptiveDecoding;
+
+  /// 先以一半分辨率识别，失败或码较小时再识别原图，近距离大码识别更快（仅Android）
+  final bool pyramidDecoding;
+
+  /// 一帧中识别所有码，结果通过 startCamera 的 onQrsBack 返回（仅Android）
+  final bool multipleDecoding;
+
+  /// 同一个码在该时长内持续被识别时只回调一次，为 0 时每帧都回调（仅Android）
+  final Duration duplicateWindow;
+
+  /// 识别耗时占比上限 (0, 1]，小于 1 时按实测识别耗时跳过部分帧以省电，为 1 时空闲即识别（仅Android）
+  final double decodeDutyCycle;
+
+  /// 识别跟不上相机帧率时降低预览帧率（不低于 15 帧），画面也会随之变慢（仅Android）
+  final bool adjustPreviewFps;
+
+  /// 跳过明显比最近几帧模糊的帧（对焦中、晃动），把识别时间留给清晰的帧（仅Android）
+  final bool skipBlurryFrames;
+
+  /// 按要扫的最密的码的宽度（模块数）与机型性能选择预览分辨率，如 57 对应 QR 码版本 10，
+  /// 驾照上的 PDF417 约为 300；为空时按控件尺寸选择（仅Android）
+  final int? previewCodeModules;
+
   QrReaderView({
     Key? key,
     required this.width,
@@ -35,6 +157,15 @@ class QrReaderView extends StatefulWidget {
     required this.callback,
     this.autoFocusIntervalInMs = 500,
     this.torchEnabled = false,
+    this.scanRect,
+    this.adaptiveDecoding = false,
+    this.pyramidDecoding = false,
+    this.multipleDecoding = false,
+    this.duplicateWindow = Duration.zero,
+    this.decodeDutyCycle = 1.0,
+    this.adjustPreviewFps = false,
+    this.skipBlurryFrames = false,
+    this.previewCodeModules,
   }) : super(key: key);
 
   @override
@@ -57,6 +188,15 @@ class _QrReaderViewState extends State<QrReaderView> {
           "height": (widget.height * window.devicePixelRatio).floor(),
           "extra_focus_interval": widget.autoFocusIntervalInMs,
           "extra_torch_enabled": widget.torchEnabled,
+          "extra_scan_rect": _scanRectInPixels(window.devicePixelRatio),
+          "extra_adaptive_decoding": widget.adaptiveDecoding,
+          "extra_pyramid_decoding": widget.pyramidDecoding,
+          "extra_multiple_decoding": widget.multipleDecoding,
+          "extra_duplicate_window": widget.duplicateWindow.inMilliseconds,
+          "extra_decode_duty_cycle": widget.decodeDutyCycle,
+          "extra_adjust_preview_fps": widget.adjustPreviewFps,
+          "extra_skip_blurry_frames": widget.skipBlurryFrames,
+          "extra_preview_code_modules": widget.previewCodeModules,
         },
         creationParamsCodec: const StandardMessageCodec(),
         onPlatformViewCreated: _onPlatformViewCreated,
@@ -84,6 +224,19 @@ class _QrReaderViewState extends State<QrReaderView> {
     }
   }
 
+  List<int>? _scanRectInPixels(double ratio) {
+    final rect = widget.scanRect;
+    if (rect == null) {
+      return null;
+    }
+    return [
+      (rect.left * ratio).floor(),
+      (rect.top * ratio).floor(),
+      (rect.width * ratio).floor(),
+      (rect.height * ratio).floor(),
+    ];
+  }
+
   void _onPlatformViewCreated(int id) {
     widget.callback(QrReaderViewController(id));
   }
@@ -95,6 +248,7 @@ class _QrReaderViewState extends State<QrReaderView> {
 }
 
 typedef ReadChangeBack = void Function(String, List<Offset>);
+typedef ReadMultipleChangeBack = void Function(List<QrCodeResult>);
 
 class QrReaderViewController {
   final int id;
@@ -106,21 +260,23 @@ class QrReaderViewController {
   }
 
   ReadChangeBack? onQrBack;
+  ReadMultipleChangeBack? onQrsBack;
 
   Future _handleMessages(MethodCall call) async {
     switch (call.method) {
       case "onQRCodeRead":
-        final points = <Offset>[];
-        if (call.arguments.containsKey("points")) {
-          final pointsStrs = call.arguments["points"];
-          for (String point in pointsStrs) {
-            final a = point.split(",");
-            points.add(Offset(double.tryParse(a.first) ?? 0, double.tryParse(a.last) ?? 0));
-          }
-        }
+        final points = _parsePoints(call.arguments["points"]);
 
         this.onQrBack!(call.arguments["text"], points);
         break;
+      case "onQRCodesRead":
+        final codes = (call.arguments as List).map((code) => QrCodeResult.fromMap(code)).toList();
+        if (this.onQrsBack != null) {
+          this.onQrsBack!(codes);
+        } else if (codes.isNotEmpty) {
+          this.onQrBack!(codes.first.text, codes.first.points);
+        }
+        break;
     }
   }
 
@@ -129,9 +285,10 @@ class QrReaderViewController {
     return _channel.invokeMethod<bool>("flashlight");
   }
 
-  // 开始扫码
-  Future startCamera(ReadChangeBack onQrBack) async {
+  // 开始扫码，multipleDecoding 时每帧的所有结果交给 onQrsBack
+  Future startCamera(ReadChangeBack onQrBack, {ReadMultipleChangeBack? onQrsBack}) async {
     this.onQrBack = onQrBack;
+    this.onQrsBack = onQrsBack;
     return _channel.invokeMethod("startCamera");
   }
 
@@ -139,4 +296,9 @@ class QrReaderViewController {
   Future stopCamera() async {
     return _channel.invokeMethod("stopCamera");
   }
+
+  // 识别统计：formatHits、readerOrder、binarizer、frames（本次扫码的识别/丢弃/跳过/模糊帧数）等（仅Android）
+  Future<Map<dynamic, dynamic>?> getDecodeStatistics() async {
+    return _channel.invokeMethod<Map<dynamic, dynamic>>("getDecodeStatistics");
+  }
 }